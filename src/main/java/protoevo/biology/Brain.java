@@ -8,6 +8,17 @@ import java.io.Serializable;
 public interface Brain extends Serializable
 {
 	void tick(Protozoan p);
+
+	/**
+	 * Called instead of {@link #tick(Protozoan)} when brains are evaluated together in the
+	 * tank's think stage. Brains that are not evaluated there just tick.
+	 */
+	default void prepareThink(Protozoan p) {
+		tick(p);
+	}
+
+	default void finishThink(Protozoan p) {}
+
 	float turn(Protozoan p);
 	float speed(Protozoan p);
 	float attack(Protozoan p);
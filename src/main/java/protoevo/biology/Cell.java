@@ -5,22 +5,23 @@ import protoevo.core.Settings;
 import protoevo.core.Simulation;
 import protoevo.env.Rock;
 import protoevo.env.Tank;
+import protoevo.utils.Colour;
 import protoevo.utils.Geometry;
 import protoevo.utils.Vector2;
 
-import java.awt.*;
 import java.io.Serializable;
 import java.util.*;
 
 public abstract class Cell extends Particle implements Serializable
 {
-	private static final long serialVersionUID = -4333766895269415282L;
+	// changed when the colours became packed ints, as older saves hold java.awt.Colors
+	private static final long serialVersionUID = 8261657684473197624L;
 
 	@FunctionalInterface
 	public interface EntityBuilder<T, R> {
 		R apply(T t) throws MiscarriageException;
 	}
-	private Color healthyColour, fullyDegradedColour;
+	private int healthyColour, fullyDegradedColour;
 	private int generation = 1;
 	private boolean dead = false;
 	protected boolean hasHandledDeath = false;
@@ -38,11 +39,12 @@ public abstract class Cell extends Particle implements Serializable
 	private final Map<Food.ComplexMolecule, Float> complexMoleculeProductionRates;
 	private final Map<CellAdhesion.CellAdhesionMolecule, Float> camProductionRates;
 	private final ArrayList<Cell> children = new ArrayList<>();
+	private long randomKey = Simulation.RANDOM.nextLong();
 
 	public Cell(Tank tank)
 	{
 		super(tank);
-		healthyColour = new Color(255, 255, 255);
+		healthyColour = Colour.WHITE;
 		foodDigestionRates = new HashMap<>(0);
 		foodToDigest = new HashMap<>(0);
 		cellBindings = new HashSet<>(0);
@@ -336,7 +338,7 @@ public abstract class Cell extends Particle implements Serializable
 
 	@Override
 	public boolean handlePotentialCollision(Rock rock, float delta) {
-		if (rock.pointInside(getPos())) {
+		if (rock.pointInside(getPosX(), getPosY())) {
 			killCell();
 			return true;
 		}
@@ -425,40 +427,57 @@ public abstract class Cell extends Particle implements Serializable
 	}
 
 	@Override
-	public Color getColor() {
-		Color healthyColour = getHealthyColour();
-		Color degradedColour = getFullyDegradedColour();
-		return new Color(
-			(int) (healthyColour.getRed() + (1 - getHealth()) * (degradedColour.getRed() - healthyColour.getRed())),
-			(int) (healthyColour.getGreen() + (1 - getHealth()) * (degradedColour.getGreen() - healthyColour.getGreen())),
-			(int) (healthyColour.getBlue() + (1 - getHealth()) * (degradedColour.getBlue() - healthyColour.getBlue()))
+	public int getColor() {
+		int healthyColour = getHealthyColour();
+		int degradedColour = getFullyDegradedColour();
+		int r = Colour.red(healthyColour), g = Colour.green(healthyColour), b = Colour.blue(healthyColour);
+		return Colour.rgb(
+			(int) (r + (1 - getHealth()) * (Colour.red(degradedColour) - r)),
+			(int) (g + (1 - getHealth()) * (Colour.green(degradedColour) - g)),
+			(int) (b + (1 - getHealth()) * (Colour.blue(degradedColour) - b))
 		);
 	}
 
-	public Color getHealthyColour() {
+	public int getHealthyColour() {
 		return healthyColour;
 	}
 
-	public void setHealthyColour(Color healthyColour) {
+	public void setHealthyColour(int healthyColour) {
 		this.healthyColour = healthyColour;
 	}
 
-	public void setDegradedColour(Color fullyDegradedColour) {
+	public void setDegradedColour(int fullyDegradedColour) {
 		this.fullyDegradedColour = fullyDegradedColour;
 	}
 
-	public Color getFullyDegradedColour() {
-		if (fullyDegradedColour == null) {
-			Color healthyColour = getHealthyColour();
-			int r = healthyColour.getRed();
-			int g = healthyColour.getGreen();
-			int b = healthyColour.getBlue();
+	/**
+	 * @return the colour set by {@link #setDegradedColour(int)}, or a darkening of the
+	 * healthy colour if none was set.
+	 */
+	public int getFullyDegradedColour() {
+		if (fullyDegradedColour == 0) {
+			int healthyColour = getHealthyColour();
 			float p = 0.7f;
-			return new Color((int) (r*p), (int) (g*p), (int) (b*p));
+			return Colour.rgb(
+				(int) (Colour.red(healthyColour)*p),
+				(int) (Colour.green(healthyColour)*p),
+				(int) (Colour.blue(healthyColour)*p));
 		}
 		return fullyDegradedColour;
 	}
 
+	/**
+	 * @return the key of the cell's random streams, see {@link protoevo.core.SimulationRandom}.
+	 */
+	@Override
+	public long getRandomKey() {
+		// cells from saves made before they had keys are keyed by where they were loaded
+		if (randomKey == 0)
+			randomKey = ((long) Float.floatToIntBits(getPos().getX()) << 32)
+					| (Float.floatToIntBits(getPos().getY()) & 0xffffffffL);
+		return randomKey;
+	}
+
 	public int getGeneration() {
 		return generation;
 	}
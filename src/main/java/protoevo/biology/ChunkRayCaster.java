@@ -0,0 +1,131 @@
+package protoevo.biology;
+
+import protoevo.core.ChunkManager;
+import protoevo.core.Collidable;
+import protoevo.utils.Vector2;
+
+import java.util.Arrays;
+import java.util.function.Consumer;
+
+/**
+ * Casts the rays of a protozoan's retina by walking each ray through the chunks of the
+ * {@link ChunkManager} in order (2D DDA), testing only the objects in and around the chunks
+ * it crosses, and stopping once the nearest hit is closer than the edge of the current chunk.
+ * <p>
+ * Cells are bucketed by their centre, so the chunks within the largest cell radius of each
+ * chunk crossed are visited too. Anything the ray hits before leaving a chunk then lies in a
+ * visited chunk. Only the chunks {@link ChunkManager#forEachInRange(Vector2, float, Consumer)}
+ * would scan for the interact range are visited, so each ray ends up with the same nearest
+ * hit as when every object it returns is seen with {@link Protozoan#see(Collidable)}.
+ */
+class ChunkRayCaster implements Consumer<Collidable> {
+
+	private final Protozoan protozoan;
+	private Retina.Cell cell;
+	private int ray;
+	private float startX, startY, endX, endY, range;
+	private int iMin, iMax, jMin, jMax;
+	private int[] visited = new int[64];
+	private int nVisited;
+
+	ChunkRayCaster(Protozoan protozoan) {
+		this.protozoan = protozoan;
+	}
+
+	void cast(Retina retina, ChunkManager chunkManager) {
+		range = protozoan.getInteractRange();
+		startX = protozoan.getPos().getX();
+		startY = protozoan.getPos().getY();
+		retina.orient(protozoan.getDir(), range);
+		iMin = chunkManager.toChunkX(startX - range);
+		iMax = chunkManager.toChunkX(startX + range);
+		jMin = chunkManager.toChunkY(startY - range);
+		jMax = chunkManager.toChunkY(startY + range);
+
+		// cells may grow during the pass, so allow for twice the radius they had at its start
+		float reach = 2 * chunkManager.getMaxCellRadius();
+		int k = Math.max(1, (int) Math.ceil(reach / chunkManager.getChunkSize()));
+		// a cell in range is within range + r of the start, so is hit no further than range + 2r
+		float maxLength = range + 2 * reach;
+
+		for (Retina.Cell cell : retina.getCells())
+			for (int i = 0; i < cell.getRays().length; i++)
+				cast(cell, i, chunkManager, k, maxLength);
+	}
+
+	private void cast(Retina.Cell cell, int ray, ChunkManager chunkManager, int k, float maxLength) {
+		this.cell = cell;
+		this.ray = ray;
+		endX = startX + cell.getOrientedRayX(ray);
+		endY = startY + cell.getOrientedRayY(ray);
+		float ux = cell.getOrientedRayX(ray) / range;
+		float uy = cell.getOrientedRayY(ray) / range;
+		nVisited = 0;
+
+		float size = chunkManager.getChunkSize();
+		float gx = 1 + (startX - chunkManager.getXMin()) / size;
+		float gy = 1 + (startY - chunkManager.getYMin()) / size;
+		int i = (int) Math.floor(gx), j = (int) Math.floor(gy);
+		int stepI = ux > 0 ? 1 : -1, stepJ = uy > 0 ? 1 : -1;
+		float deltaX = ux == 0 ? Float.POSITIVE_INFINITY : size / Math.abs(ux);
+		float deltaY = uy == 0 ? Float.POSITIVE_INFINITY : size / Math.abs(uy);
+		float nextX = ux == 0 ? Float.POSITIVE_INFINITY : (ux > 0 ? i + 1 - gx : gx - i) * deltaX;
+		float nextY = uy == 0 ? Float.POSITIVE_INFINITY : (uy > 0 ? j + 1 - gy : gy - j) * deltaY;
+
+		while (true) {
+			visitAround(i, j, k, chunkManager);
+			float exit = Math.min(nextX, nextY);
+			if (exit >= maxLength || cell.collisionSqLen(ray) <= exit * exit)
+				return;
+			if (nextX < nextY) {
+				i += stepI;
+				nextX += deltaX;
+			} else {
+				j += stepJ;
+				nextY += deltaY;
+			}
+		}
+	}
+
+	private void visitAround(int i, int j, int k, ChunkManager chunkManager) {
+		for (int ci = Math.max(iMin, i - k); ci <= Math.min(iMax, i + k); ci++) {
+			for (int cj = Math.max(jMin, j - k); cj <= Math.min(jMax, j + k); cj++) {
+				int chunkID = chunkManager.toChunkID(ci, cj);
+				if (markVisited(chunkID)) {
+					chunkManager.forEachCellInChunk(chunkID, this);
+					chunkManager.forEachRockInChunk(chunkID, this);
+				}
+			}
+		}
+	}
+
+	private boolean markVisited(int chunkID) {
+		for (int n = 0; n < nVisited; n++)
+			if (visited[n] == chunkID)
+				return false;
+		if (nVisited == visited.length)
+			visited = Arrays.copyOf(visited, 2 * nVisited);
+		visited[nVisited++] = chunkID;
+		return true;
+	}
+
+	@Override
+	public void accept(Collidable o) {
+		if (o == protozoan)
+			return;
+		if (o instanceof Cell) {
+			Cell other = (Cell) o;
+			float dx = other.getPosX() - startX;
+			float dy = other.getPosY() - startY;
+			float reach = range + other.getRadius();
+			if (!(dx*dx + dy*dy < reach*reach))
+				return;
+		}
+		if (protozoan.cullFromRayCasting(o))
+			return;
+
+		float sqLen = o.rayCollisionSqLen(startX, startY, endX, endY);
+		if (sqLen < cell.collisionSqLen(ray))
+			cell.set(ray, o.getColor(), sqLen);
+	}
+}
@@ -2,8 +2,7 @@ package protoevo.biology;
 
 import protoevo.core.Simulation;
 import protoevo.env.Tank;
-
-import java.awt.*;
+import protoevo.utils.Colour;
 
 public class MeatCell extends EdibleCell {
 
@@ -17,8 +16,8 @@ public class MeatCell extends EdibleCell {
         int r = 150 + Simulation.RANDOM.nextInt(105);
         int g = 25  + Simulation.RANDOM.nextInt(100);
         int b = 25  + Simulation.RANDOM.nextInt(100);
-        setHealthyColour(new Color(r, g, b));
-        setDegradedColour(new Color(158, 121, 79));
+        setHealthyColour(Colour.rgb(r, g, b));
+        setDegradedColour(Colour.rgb(158, 121, 79));
     }
 
     public void age(float delta) {
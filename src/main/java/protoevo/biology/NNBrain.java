@@ -4,8 +4,6 @@ import protoevo.env.ChemicalSolution;
 import protoevo.core.Settings;
 import protoevo.neat.NeuralNetwork;
 
-import java.awt.*;
-
 public class NNBrain implements Brain {
 
     public final NeuralNetwork network;
@@ -26,12 +24,29 @@ public class NNBrain implements Brain {
 
     @Override
     public void tick(Protozoan p)
+    {
+        setInputs(p);
+        network.tick();
+        outputs = network.outputs();
+    }
+
+    @Override
+    public void prepareThink(Protozoan p) {
+        setInputs(p);
+    }
+
+    @Override
+    public void finishThink(Protozoan p) {
+        outputs = network.outputs();
+    }
+
+    private void setInputs(Protozoan p)
     {
         int i = 0;
         // ProtozoaGenome.nonVisualSensorSize
         inputs[i++] = 1; // bias term
         inputs[i++] = p.getHealth() * 2 - 1;
-        inputs[i++] = 2 * p.getRadius() / p.getGenome().getSplitRadius() - 1;
+        inputs[i++] = 2 * p.getRadius() / p.getSplitRadius() - 1;
         inputs[i++] = 2 * p.getConstructionMassAvailable() / p.getConstructionMassCap() - 1;
 
         for (Protozoan.ContactSensor sensor : p.getContactSensors())
@@ -54,21 +69,11 @@ public class NNBrain implements Brain {
 
         float retinaHealth = p.getRetina().getHealth();
         for (Retina.Cell cell : p.getRetina()) {
-            if (cell.anythingVisible()) {
-                Color colour = cell.getColour();
-                inputs[i++] = retinaHealth * (-1 + 2 * colour.getRed() / 255f);
-                inputs[i++] = retinaHealth * (-1 + 2 * colour.getGreen() / 255f);
-                inputs[i++] = retinaHealth * (-1 + 2 * colour.getBlue() / 255f);
-            } else {
-                inputs[i++] = 0f;
-                inputs[i++] = 0f;
-                inputs[i++] = 0f;
-            }
+            cell.writeInputs(inputs, i, retinaHealth);
+            i += 3;
         }
 
         network.setInput(inputs);
-        network.tick();
-        outputs = network.outputs();
     }
 
     @Override
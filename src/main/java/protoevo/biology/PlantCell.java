@@ -5,18 +5,19 @@ import protoevo.core.Particle;
 import protoevo.core.Settings;
 import protoevo.core.Simulation;
 import protoevo.env.Tank;
-import protoevo.utils.Vector2;
+import protoevo.utils.Colour;
 
-import java.awt.*;
-import java.util.Iterator;
 import java.util.Map;
+import java.util.function.Consumer;
 
 public class PlantCell extends EdibleCell {
     public static final long serialVersionUID = -3975433688803760076L;
 
     private final float maxRadius;
     private float crowdingFactor;
+    private transient Consumer<Cell> crowdingCounter;
     private final float plantAttractionFactor;
+    private static final float plantAttractionRange = 3f;
 
     public PlantCell(float radius, Tank tank) {
         super(radius, Food.Type.Plant, tank);
@@ -25,7 +26,7 @@ public class PlantCell extends EdibleCell {
         float range = Settings.maxPlantBirthRadius - radius;
         maxRadius = (float) (radius + range * Simulation.RANDOM.nextDouble());
 
-        setHealthyColour(new Color(
+        setHealthyColour(Colour.rgb(
                 30 + Simulation.RANDOM.nextInt(105),
                 150  + Simulation.RANDOM.nextInt(100),
                 10  + Simulation.RANDOM.nextInt(100))
@@ -33,16 +34,26 @@ public class PlantCell extends EdibleCell {
         plantAttractionFactor = 5e-8f;
     }
 
+    @Override
+    protected float getCollisionRange() {
+        // plants attract the plants around them, not just those they touch
+        return plantAttractionRange * getRadius();
+    }
+
     @Override
     public boolean handlePotentialCollision(Particle p, float delta) {
         boolean collision = super.handlePotentialCollision(p, delta);
         if (p != this && p instanceof PlantCell) {
             PlantCell otherPlant = (PlantCell) p;
-            float sqDist = otherPlant.getPos().sub(getPos()).len2();
+            float dx = otherPlant.getPosX() - getPosX();
+            float dy = otherPlant.getPosY() - getPosY();
+            float sqDist = dx*dx + dy*dy;
             float r = getRadius() + otherPlant.getRadius();
-            if (sqDist > 1.01f*r*r && !isAttached(otherPlant)) {
-                Vector2 f = p.getPos().sub(getPos()).setLength(plantAttractionFactor / sqDist);
-                accelerate(f.mul(1 / getMass()));
+            float reach = getCollisionRange() + otherPlant.getRadius();
+            if (sqDist > 1.01f*r*r && sqDist < reach*reach && !isAttached(otherPlant)) {
+                // a force of plantAttractionFactor / sqDist towards the other plant
+                float s = plantAttractionFactor / (sqDist * (float) Math.sqrt(sqDist) * getMass());
+                accelerate(dx * s, dy * s);
             }
         }
         return collision;
@@ -81,9 +92,11 @@ public class PlantCell extends EdibleCell {
             return;
 
         crowdingFactor = 0;
+        if (crowdingCounter == null)
+            crowdingCounter = this::updateCrowding;
         ChunkManager chunkManager = getTank().getChunkManager();
-        Iterator<Cell> entities = chunkManager.broadEntityDetection(getPos(), getRadius());
-        entities.forEachRemaining(this::updateCrowding);
+        chunkManager.forEachCellInChunks(
+                getPos().getX(), getPos().getY(), getRadius(), crowdingCounter);
 
         if (getGrowthRate() < 0f)
             setHealth(getHealth() + Settings.plantRegen * delta * getGrowthRate());
@@ -4,13 +4,15 @@ import protoevo.biology.genes.CAMProductionGene;
 import protoevo.biology.genes.ProtozoaGenome;
 import protoevo.biology.genes.RetinalProductionGene;
 import protoevo.core.*;
+import protoevo.env.Rock;
 import protoevo.env.Tank;
 import protoevo.neat.NeuralNetwork;
 import protoevo.utils.Vector2;
 
 import java.io.Serializable;
-import java.util.Iterator;
+import java.util.Arrays;
 import java.util.Map;
+import java.util.function.Consumer;
 
 public class Protozoan extends Cell
 {
@@ -23,6 +25,7 @@ public class Protozoan extends Cell
 	private ProtozoaGenome crossOverGenome;
 	private Protozoan mate;
 	private float timeMating = 0;
+	private int species = 0;
 
 	private Retina retina;
 	private final Brain brain;
@@ -34,6 +37,10 @@ public class Protozoan extends Cell
 	private final float splitRadius;
 
 	private final Vector2 dir = new Vector2(0, 0);
+	private transient Vector2 rayBuffer;
+	private transient ChunkRayCaster chunkRayCaster;
+	private transient Consumer<Collidable> interactionHandler;
+	private transient float interactionDelta;
 
 	public static class Spike implements Serializable {
 		private static final long serialVersionUID = 1L;
@@ -117,14 +124,30 @@ public class Protozoan extends Cell
 	}
 
 	public Vector2 getSensorPosition(ContactSensor sensor) {
-		return getPos().add(dir.rotate(sensor.angle).setLength(1.01f * getRadius()));
+		return new Vector2(getPosX(), getPosY()).add(dir.rotate(sensor.angle).setLength(1.01f * getRadius()));
+	}
+
+	@Override
+	protected float getCollisionRange() {
+		// contact sensors sit just outside the membrane
+		return 1.01f * getRadius();
 	}
 
 	@Override
 	public boolean handlePotentialCollision(Collidable other, float delta) {
-		if (other != this) {
+		if (other != this && contactSensors.length > 0) {
+			// same positions as getSensorPosition, without allocating in the physics substeps
+			float dirLen = dir.len();
+			float ux = dirLen == 0 ? 0 : dir.getX() / dirLen;
+			float uy = dirLen == 0 ? 0 : dir.getY() / dirLen;
+			float sensorDist = 1.01f * getRadius();
+			float x = getPosX(), y = getPosY();
 			for (ContactSensor contactSensor : contactSensors) {
-				if (other.pointInside(getSensorPosition(contactSensor))) {
+				float c = (float) Math.cos(contactSensor.angle);
+				float s = (float) Math.sin(contactSensor.angle);
+				float sensorX = x + (ux*c - uy*s) * sensorDist;
+				float sensorY = y + (ux*s + uy*c) * sensorDist;
+				if (other.pointInside(sensorX, sensorY)) {
 					contactSensor.contact = other;
 				}
 			}
@@ -135,35 +158,98 @@ public class Protozoan extends Cell
 	public boolean cullFromRayCasting(Collidable o) {
 		if (o instanceof Particle) {
 			Particle p = (Particle) o;
-			Vector2 dx = p.getPos().sub(getPos()).unit();
-			return dx.dot(getDir().unit()) < Math.cos(retina.getFov() / 2f);
+			float dx = p.getPos().getX() - getPos().getX();
+			float dy = p.getPos().getY() - getPos().getY();
+			float len = (float) Math.sqrt(dx*dx + dy*dy);
+			if (len != 0) {
+				dx /= len;
+				dy /= len;
+			}
+			float dirLen = getDir().len();
+			float ux = dirLen == 0 ? 0 : getDir().getX() / dirLen;
+			float uy = dirLen == 0 ? 0 : getDir().getY() / dirLen;
+			return dx*ux + dy*uy < Math.cos(retina.getFov() / 2f);
 		}
 		return false;
 	}
 
 	public void see(Collidable o)
+	{
+		see(o, Settings.angularSweepVision);
+	}
+
+	void see(Collidable o, boolean angularSweep)
 	{
 		if (cullFromRayCasting(o))
 			return;
 
-		float interactRange = getInteractRange();
-		float dirAngle = getDir().angle();
-		for (Retina.Cell cell : retina.getCells()) {
-			Vector2[] rays = cell.getRays();
-			for (int i = 0; i < rays.length; i++) {
-				Vector2 ray = rays[i].rotate(dirAngle).setLength(interactRange);
-				Vector2[] collisions = o.rayCollisions(getPos(), getPos().add(ray));
-				if (collisions == null || collisions.length == 0)
-					continue;
-
-				float sqLen = Float.MAX_VALUE;
-				for (Vector2 collisionPoint : collisions)
-					sqLen = Math.min(sqLen, collisionPoint.sub(getPos()).len2());
-
-				if (sqLen < cell.collisionSqLen(i))
-					cell.set(i, o.getColor(), sqLen);
-			}
+		retina.orient(getDir(), getInteractRange());
+		if (angularSweep && sweep(o, retina.getOrientedAngle()))
+			return;
+
+		for (Retina.Cell cell : retina.getCells())
+			for (int i = 0; i < cell.getRays().length; i++)
+				castRay(o, cell, i);
+	}
+
+	/**
+	 * Casts only the rays whose angle lies within the interval subtended by the bounding
+	 * circle of the object. Rays outside of it cannot hit the object, so the retina ends up
+	 * the same as if every ray had been cast.
+	 *
+	 * @return false if the object has no bounding circle the rays can be swept against.
+	 */
+	private boolean sweep(Collidable o, float dirAngle) {
+		float cx, cy, r;
+		if (o instanceof Particle) {
+			Particle p = (Particle) o;
+			cx = p.getPosX();
+			cy = p.getPosY();
+			r = p.getRadius();
+		} else if (o instanceof Rock) {
+			Rock rock = (Rock) o;
+			cx = rock.getCentre().getX();
+			cy = rock.getCentre().getY();
+			r = 0;
+			for (Vector2 point : rock.getPoints())
+				r = Math.max(r, point.distanceTo(rock.getCentre()));
+		} else {
+			return false;
+		}
+
+		float dx = cx - getPos().getX(), dy = cy - getPos().getY();
+		float dist = (float) Math.sqrt(dx*dx + dy*dy);
+		// slack for rounding in the rotated rays, the exact test is done per ray anyway
+		float slack = 1e-3f;
+		if (dist * (1 - slack) <= r)
+			return false;
+		float halfWidth = (float) Math.asin(r / dist) + slack;
+		float centre = (float) Math.atan2(dy, dx) - dirAngle;
+
+		float[] angles = retina.getSweepAngles();
+		float twoPi = (float) (2 * Math.PI);
+		float minAngle = angles[0], maxAngle = angles[angles.length - 1];
+		int kMin = (int) Math.ceil((minAngle - centre - halfWidth) / twoPi);
+		int kMax = (int) Math.floor((maxAngle - centre + halfWidth) / twoPi);
+		for (int k = kMin; k <= kMax; k++) {
+			float lo = centre + k * twoPi - halfWidth;
+			float hi = centre + k * twoPi + halfWidth;
+			int j = Arrays.binarySearch(angles, lo);
+			if (j < 0)
+				j = -j - 1;
+			for (; j < angles.length && angles[j] <= hi; j++)
+				castRay(o, retina.getCell(retina.getSweepCell(j)), retina.getSweepRay(j));
 		}
+		return true;
+	}
+
+	private void castRay(Collidable o, Retina.Cell cell, int i) {
+		float startX = getPos().getX(), startY = getPos().getY();
+		float sqLen = o.rayCollisionSqLen(
+				startX, startY, startX + cell.getOrientedRayX(i), startY + cell.getOrientedRayY(i));
+
+		if (sqLen < cell.collisionSqLen(i))
+			cell.set(i, o.getColor(), sqLen);
 	}
 	
 	public void eat(EdibleCell e, float delta)
@@ -205,6 +291,11 @@ public class Protozoan extends Cell
 	public void think(float delta)
 	{
 		brain.tick(this);
+		swim(delta);
+	}
+
+	private void swim(float delta)
+	{
 		dir.turn(delta * 80 * brain.turn(this));
 		float spikeDecay = (float) Math.pow(Settings.spikeMovementPenaltyFactor, spikes.length);
 		float sizePenalty = getRadius() / splitRadius; // smaller flagella generate less impulse
@@ -237,7 +328,7 @@ public class Protozoan extends Cell
 			return;
 		}
 
-		if (retina.numberOfCells() > 0 && retina.getHealth() > 0)
+		if (retina.numberOfCells() > 0 && retina.getHealth() > 0 && !castsRaysThroughChunks())
 			see(other);
 
 		if (other instanceof Cell) {
@@ -291,9 +382,30 @@ public class Protozoan extends Cell
 	}
 
 	private boolean spikeInContact(Spike spike, float spikeLen, Cell other) {
-		Vector2 spikeStartPos = getDir().unit().rotate(spike.angle).setLength(getRadius()).translate(getPos());
-		Vector2 spikeEndPos = spikeStartPos.add(spikeStartPos.sub(getPos()).setLength(spikeLen));
-		return other.getPos().sub(spikeEndPos).len2() < other.getRadius() * other.getRadius();
+		Vector2 rayBuffer = getRayBuffer();
+		getDir().unitInto(rayBuffer).rotateInto(spike.angle, rayBuffer).setLength(getRadius());
+		float startX = rayBuffer.getX() + getPos().getX();
+		float startY = rayBuffer.getY() + getPos().getY();
+		rayBuffer.set(startX - getPos().getX(), startY - getPos().getY());
+		rayBuffer.setLength(spikeLen);
+		float dx = other.getPos().getX() - (startX + rayBuffer.getX());
+		float dy = other.getPos().getY() - (startY + rayBuffer.getY());
+		return dx*dx + dy*dy < other.getRadius() * other.getRadius();
+	}
+
+	private Vector2 getRayBuffer() {
+		if (rayBuffer == null)
+			rayBuffer = new Vector2(0, 0);
+		return rayBuffer;
+	}
+
+	/**
+	 * Covers the interactions and the first physics substep, with a skin to spare
+	 * for cells moving in between.
+	 */
+	@Override
+	protected float getNeighbourhoodRange() {
+		return Math.max(getInteractRange(), super.getNeighbourhoodRange()) + Settings.neighbourListSkin;
 	}
 
 	public float getInteractRange() {
@@ -307,9 +419,28 @@ public class Protozoan extends Cell
 		wasJustDamaged = false;
 		retina.reset();
 		ChunkManager chunkManager = getTank().getChunkManager();
-		Iterator<Collidable> entities = chunkManager
-				.broadCollisionDetection(getPos(), getInteractRange());
-		entities.forEachRemaining(e -> interact(e, delta));
+		if (interactionHandler == null)
+			interactionHandler = e -> interact(e, interactionDelta);
+		interactionDelta = delta;
+		if (Settings.useSharedNeighbourhoods)
+			getNeighbourhood().forEachInRange(getPosX(), getPosY(), getInteractRange(), interactionHandler);
+		else
+			chunkManager.forEachInRange(getPos(), getInteractRange(), interactionHandler);
+
+		if (castsRaysThroughChunks() && retina.getHealth() > 0 && !isDead()) {
+			if (chunkRayCaster == null)
+				chunkRayCaster = new ChunkRayCaster(this);
+			chunkRayCaster.cast(retina, chunkManager);
+		}
+	}
+
+	/**
+	 * Whether the retina is large enough to be cast ray by ray through the chunks, see
+	 * {@link Settings#chunkRayCastingRetinaSize}, rather than by seeing every object in range.
+	 */
+	private boolean castsRaysThroughChunks() {
+		return Settings.chunkRayCastingRetinaSize > 0
+				&& retina.numberOfCells() >= Settings.chunkRayCastingRetinaSize;
 	}
 
 	private void breakIntoPellets() {
@@ -380,8 +511,28 @@ public class Protozoan extends Cell
 		if (isDead())
 			handleDeath();
 
+		if (Settings.useThinkStage) {
+			brain.prepareThink(this);
+			return;
+		}
+
 		think(delta);
+		act(delta);
+	}
 
+	/**
+	 * Carries out the decisions of the brain once it has been evaluated in the
+	 * tank's think stage, completing the update that {@link #update(float)} began.
+	 */
+	public void actOnThoughts(float delta)
+	{
+		brain.finishThink(this);
+		swim(delta);
+		act(delta);
+	}
+
+	private void act(float delta)
+	{
 		for (Spike spike : spikes)
 			spike.update(delta);
 
@@ -410,6 +561,22 @@ public class Protozoan extends Cell
 		this.retina = retina;
 	}
 
+	public float getSplitRadius() {
+		return splitRadius;
+	}
+
+	/**
+	 * @return the id of the species the protozoan was assigned to when it was added
+	 * to the tank, or 0 if speciation is disabled or it has no network.
+	 */
+	public int getSpecies() {
+		return species;
+	}
+
+	public void setSpecies(int species) {
+		this.species = species;
+	}
+
 	public ProtozoaGenome getGenome() {
 		return genome;
 	}
@@ -2,9 +2,9 @@ package protoevo.biology;
 
 import com.google.common.collect.Iterators;
 import protoevo.core.Settings;
+import protoevo.utils.Colour;
 import protoevo.utils.Vector2;
 
-import java.awt.Color;
 import java.io.Serializable;
 import java.util.Arrays;
 import java.util.HashMap;
@@ -17,11 +17,13 @@ public class Retina implements Iterable<Retina.Cell>, Serializable
 	private static final long serialVersionUID = 5214857174841633362L;
 
 	public static class Cell implements Serializable {
-		private static final long serialVersionUID = 1L;
+		// 2 since the colours seen are packed ints rather than java.awt.Colors
+		private static final long serialVersionUID = 2L;
 		private final float angle;
-		private final Color[] colours;
+		private final int[] colours;
 		private final float[] weights, lengths;
 		private final Vector2[] rays;
+		private transient float[] orientedRayX, orientedRayY;
 		private final RetinaConstructionProject constructionProject;
 
 		public Cell(float angle, float cellFov, RetinaConstructionProject constructionProject) {
@@ -31,7 +33,7 @@ public class Retina implements Iterable<Retina.Cell>, Serializable
 			if (cellFov > Settings.minRetinaRayAngle)
 				nRays = (int) (cellFov / Settings.minRetinaRayAngle);
 
-			colours = new Color[nRays];
+			colours = new int[nRays];
 			weights = new float[nRays];
 			lengths = new float[nRays];
 			rays = new Vector2[nRays];
@@ -45,12 +47,12 @@ public class Retina implements Iterable<Retina.Cell>, Serializable
 		}
 
 		public void reset() {
-			Arrays.fill(colours, null);
+			Arrays.fill(colours, 0);
 			Arrays.fill(weights, 0);
 			Arrays.fill(lengths, Float.MAX_VALUE);
 		}
 
-		public void set(int idx, Color c, float sqLen) {
+		public void set(int idx, int c, float sqLen) {
 			colours[idx] = c;
 			lengths[idx] = sqLen;
 			weights[idx] = 1f;
@@ -60,36 +62,69 @@ public class Retina implements Iterable<Retina.Cell>, Serializable
 			return rays;
 		}
 
-		public Color getColour() {
+		/**
+		 * @return the x component of the ray as last oriented by {@link Retina#orient(Vector2, float)}.
+		 */
+		public float getOrientedRayX(int rayIndex) {
+			return orientedRayX[rayIndex];
+		}
+
+		public float getOrientedRayY(int rayIndex) {
+			return orientedRayY[rayIndex];
+		}
+
+		/**
+		 * @return the weighted average colour seen by the rays, packed as ARGB, with 0
+		 * marking rays that saw nothing as every colour seen is opaque.
+		 */
+		public int getColour() {
 			float r = 0;
 			float g = 0;
 			float b = 0;
 			int nEntities = 0;
 			float constructionProgress = constructionProject.getProgress();
 			for (int i = 0; i < colours.length; i++) {
-				if (colours[i] != null) {
+				if (colours[i] != 0) {
 					float w = constructionProgress * weights[i];
-					r += w * colours[i].getRed();
-					g += w * colours[i].getGreen();
-					b += w * colours[i].getBlue();
+					r += w * Colour.red(colours[i]);
+					g += w * Colour.green(colours[i]);
+					b += w * Colour.blue(colours[i]);
 					nEntities++;
 				}
 			}
 
 			if (nEntities == 0)
-				return new Color(0, 0, 0);
+				return Colour.BLACK;
 
-			return new Color(
+			return Colour.argb(
+					(int) (255 * constructionProgress),
 					(int) (r / nEntities),
 					(int) (g / nEntities),
-					(int) (b / nEntities),
-					(int) (255 * constructionProgress)
+					(int) (b / nEntities)
 			);
 		}
 
+		/**
+		 * Writes the red, green and blue seen by the cell into the buffer from the offset,
+		 * each scaled to [-1, 1] and then by the health of the retina, or zeros if nothing
+		 * is visible.
+		 */
+		public void writeInputs(float[] buffer, int offset, float retinaHealth) {
+			if (!anythingVisible()) {
+				buffer[offset] = 0f;
+				buffer[offset + 1] = 0f;
+				buffer[offset + 2] = 0f;
+				return;
+			}
+			int colour = getColour();
+			buffer[offset] = retinaHealth * (-1 + 2 * Colour.red(colour) / 255f);
+			buffer[offset + 1] = retinaHealth * (-1 + 2 * Colour.green(colour) / 255f);
+			buffer[offset + 2] = retinaHealth * (-1 + 2 * Colour.blue(colour) / 255f);
+		}
+
 		public boolean anythingVisible() {
-			for (Color c : colours)
-				if (c != null)
+			for (int c : colours)
+				if (c != 0)
 					return true;
 			return false;
 		}
@@ -99,7 +134,7 @@ public class Retina implements Iterable<Retina.Cell>, Serializable
 		}
 
 		public boolean rayIntersectedEntity(int rayIndex) {
-			return colours[rayIndex] != null;
+			return colours[rayIndex] != 0;
 		}
 
 		public float collisionSqLen(int rayIndex) {
@@ -149,6 +184,10 @@ public class Retina implements Iterable<Retina.Cell>, Serializable
 	private final float fov;
 	private final RetinaConstructionProject constructionProject;
 	private float health;
+	private transient float[] sweepAngles;
+	private transient boolean oriented;
+	private transient float orientedDirX, orientedDirY, orientedLength, orientedAngle;
+	private transient int[] sweepCells, sweepRays;
 
 	public Retina(int numCells, float fov)
 	{
@@ -191,6 +230,90 @@ public class Retina implements Iterable<Retina.Cell>, Serializable
 		return cells;
 	}
 
+	/**
+	 * Rotates the rays of every cell to the heading and scales them to the given length,
+	 * unless they were already oriented to the same heading and length. Seeing each object
+	 * in range then reuses the oriented rays rather than redoing the trig per object,
+	 * and the rays are only recomputed once the protozoan turns.
+	 */
+	public void orient(Vector2 dir, float length) {
+		if (oriented && dir.getX() == orientedDirX && dir.getY() == orientedDirY && length == orientedLength)
+			return;
+
+		orientedAngle = dir.angle();
+		float c = (float) Math.cos(orientedAngle);
+		float s = (float) Math.sin(orientedAngle);
+		Vector2 ray = new Vector2(0, 0);
+		for (Cell cell : cells) {
+			if (cell.orientedRayX == null) {
+				cell.orientedRayX = new float[cell.rays.length];
+				cell.orientedRayY = new float[cell.rays.length];
+			}
+			for (int i = 0; i < cell.rays.length; i++) {
+				cell.rays[i].rotateInto(c, s, ray).setLength(length);
+				cell.orientedRayX[i] = ray.getX();
+				cell.orientedRayY[i] = ray.getY();
+			}
+		}
+		orientedDirX = dir.getX();
+		orientedDirY = dir.getY();
+		orientedLength = length;
+		oriented = true;
+	}
+
+	/**
+	 * @return the angle of the heading the rays were last oriented to.
+	 */
+	public float getOrientedAngle() {
+		return orientedAngle;
+	}
+
+	/**
+	 * Sorts the rays of all cells by their angle relative to the heading, so that
+	 * the rays falling in an angular interval can be found by binary search.
+	 */
+	private void buildSweepTable() {
+		int n = 0;
+		for (Cell cell : cells)
+			n += cell.rays.length;
+		float[] angles = new float[n];
+		int[] cellIdx = new int[n], rayIdx = new int[n];
+		int k = 0;
+		for (int c = 0; c < cells.length; c++) {
+			for (int i = 0; i < cells[c].rays.length; i++, k++) {
+				angles[k] = cells[c].rays[i].angle();
+				cellIdx[k] = c;
+				rayIdx[k] = i;
+			}
+		}
+		Integer[] idx = new Integer[n];
+		for (int i = 0; i < n; i++)
+			idx[i] = i;
+		Arrays.sort(idx, (a, b) -> Float.compare(angles[a], angles[b]));
+		sweepAngles = new float[n];
+		sweepCells = new int[n];
+		sweepRays = new int[n];
+		for (int i = 0; i < n; i++) {
+			sweepAngles[i] = angles[idx[i]];
+			sweepCells[i] = cellIdx[idx[i]];
+			sweepRays[i] = rayIdx[idx[i]];
+		}
+	}
+
+	float[] getSweepAngles() {
+		if (sweepAngles == null)
+			buildSweepTable();
+		return sweepAngles;
+	}
+
+	int getSweepCell(int sweepIdx) {
+		return sweepCells[sweepIdx];
+	}
+
+	int getSweepRay(int sweepIdx) {
+		return sweepRays[sweepIdx];
+	}
+
 	public float getHealth() {
 		if (constructionProject.notFinished())
 			return constructionProject.getProgress();
@@ -1,5 +1,7 @@
 package protoevo.biology.genes;
 
+import com.google.common.collect.Interner;
+import com.google.common.collect.Interners;
 import protoevo.biology.*;
 import protoevo.core.Settings;
 import protoevo.core.Simulation;
@@ -7,32 +9,79 @@ import protoevo.env.Tank;
 import protoevo.neat.NetworkGenome;
 import protoevo.neat.NeuralNetwork;
 
-import java.awt.*;
 import java.io.Serializable;
 import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.Map;
 
 /**
  * Created by dylan on 28/05/2017.
+ * <p>
+ * Genomes are immutable once built, so the gene array is shared between a genome and its
+ * children until one of their genes mutates. Genomes built by {@link #mutate()} are interned,
+ * so that siblings that inherit the same genes unchanged share one instance, and equal
+ * genomes can be compared by identity. Genes are compared by reference, as a gene that
+ * mutates is always replaced by a new one.
  */
 public class ProtozoaGenome implements Serializable
 {
     public static final long serialVersionUID = 2421454107847378624L;
+    private static final Interner<ProtozoaGenome> interner = Interners.newWeakInterner();
+
     private final Gene<?>[] genes;
-    private float mutationChance = Settings.globalMutationChance;
+    private final float mutationChance;
     public static final int actionSpaceSize = 3;
     public static final int nonVisualSensorSize = 3;
 
-    private int parent1Hash = 0;
-    private int parent2Hash = 0;
+    private final int parent1Hash;
+    private final int parent2Hash;
+    private transient int hash;
+    private transient String string;
+
+    /**
+     * Slots of the genes in the gene array, in the order the genome is created with.
+     */
+    public static final int NETWORK = 0, COLOUR = 1, RETINA_SIZE = 2, FOV = 3, GROWTH_RATE = 4,
+            MAX_TURN = 5, RADIUS = 6, SPIKES = 7, SPLIT_RADIUS = 8, HERBIVORE_FACTOR = 9,
+            RETINAL_PRODUCTION = 10, CAM_PRODUCTION = 11;
+
+    private static final Map<Class<?>, Integer> geneSlots = new IdentityHashMap<>();
+    static {
+        geneSlots.put(NetworkGene.class, NETWORK);
+        geneSlots.put(ProtozoaColorGene.class, COLOUR);
+        geneSlots.put(RetinaSizeGene.class, RETINA_SIZE);
+        geneSlots.put(ProtozoaFOVGene.class, FOV);
+        geneSlots.put(ProtozoaGrowthRateGene.class, GROWTH_RATE);
+        geneSlots.put(ProtozoaMaxTurnGene.class, MAX_TURN);
+        geneSlots.put(ProtozoaRadiusGene.class, RADIUS);
+        geneSlots.put(ProtozoaSpikesGene.class, SPIKES);
+        geneSlots.put(ProtozoaSplitRadiusGene.class, SPLIT_RADIUS);
+        geneSlots.put(HerbivoreFactorGene.class, HERBIVORE_FACTOR);
+        geneSlots.put(RetinalProductionGene.class, RETINAL_PRODUCTION);
+        geneSlots.put(CAMProductionGene.class, CAM_PRODUCTION);
+    }
+
+    // genes are not changed once the genome is built, so their float values are decoded once
+    private transient volatile boolean decoded = false;
+    private transient float radius, growthRate, splitRadius, maxTurn, herbivoreFactor;
+
+    private ProtozoaGenome(Gene<?>[] genes, float mutationChance, int parent1Hash, int parent2Hash) {
+        this.genes = genes;
+        this.mutationChance = mutationChance;
+        this.parent1Hash = parent1Hash;
+        this.parent2Hash = parent2Hash;
+    }
 
     public ProtozoaGenome(ProtozoaGenome parentGenome) {
-        mutationChance = parentGenome.mutationChance;
-        genes = Arrays.copyOf(parentGenome.genes, parentGenome.genes.length);
-        parent1Hash = parentGenome.hashCode();
+        this(parentGenome.genes, parentGenome.mutationChance, parentGenome.hashCode(), 0);
     }
 
     public ProtozoaGenome()
     {
+        mutationChance = Settings.globalMutationChance;
+        parent1Hash = 0;
+        parent2Hash = 0;
+
         NetworkGenome networkGenome = new NetworkGenome();
         networkGenome.addOutput("Turn Amount");
         networkGenome.addOutput("Speed");
@@ -51,7 +100,7 @@ public class ProtozoaGenome implements Serializable
             networkGenome.addSensor("Pheromone Amount");
         }
 
-        genes = new Gene<?>[]{
+        genes = withRetinaSensors(new Gene<?>[]{
                 new NetworkGene(networkGenome),
                 new ProtozoaColorGene(),
                 new RetinaSizeGene(),
@@ -64,13 +113,11 @@ public class ProtozoaGenome implements Serializable
                 new HerbivoreFactorGene(),
                 new RetinalProductionGene(),
                 new CAMProductionGene()
-        };
-
-        ensureCorrectness();
+        });
     }
 
     public Gene<?>[] getGenes() {
-        return genes;
+        return genes.clone();
     }
 
     public static int expectedNetworkInputSize(int retinaSize) {
@@ -82,54 +129,107 @@ public class ProtozoaGenome implements Serializable
     }
 
     public ProtozoaGenome(Gene<?>[] genes) {
-        this.genes = genes;
-        NetworkGenome networkGenome = getGeneValue(NetworkGene.class);
-        if (networkGenome != null)
-            ensureCorrectness();
+        this(withRetinaSensors(genes), Settings.globalMutationChance, 0, 0);
     }
 
     public ProtozoaGenome mutate() {
-        Gene<?>[] newGenes = Arrays.copyOf(genes, genes.length);
-        int numMutations = 0;
+        Gene<?>[] newGenes = genes;
         for (int i = 0; i < genes.length; i++) {
             if (Simulation.RANDOM.nextDouble() < mutationChance) {
+                if (newGenes == genes)
+                    newGenes = Arrays.copyOf(genes, genes.length);
                 newGenes[i] = genes[i].mutate(newGenes);
 //            } if (genes[i].canDisable() && Simulation.RANDOM.nextDouble() < Settings.globalMutationChance) {
 //                newGenes[i] = genes[i].toggle();
-                numMutations += 1;
-            } else {
-                newGenes[i] = genes[i];
             }
         }
-        ProtozoaGenome mutatedGenome = new ProtozoaGenome(newGenes);
-        mutatedGenome.parent1Hash = parent1Hash;
-        mutatedGenome.parent2Hash = parent2Hash;
-        return mutatedGenome.ensureCorrectness();
+        ProtozoaGenome mutatedGenome = new ProtozoaGenome(newGenes, mutationChance, parent1Hash, parent2Hash);
+        return interner.intern(mutatedGenome.ensureCorrectness());
     }
 
+    /**
+     * @return this genome, or a new one whose network has the retina sensors this one's lacks.
+     */
     public ProtozoaGenome ensureCorrectness() {
-        int retinaSize = getGeneValue(RetinaSizeGene.class);
-        getGeneValue(NetworkGene.class).ensureRetinaSensorsExist(retinaSize);
-        return this;
+        Gene<?>[] correctGenes = withRetinaSensors(genes);
+        if (correctGenes == genes)
+            return this;
+        return new ProtozoaGenome(correctGenes, mutationChance, parent1Hash, parent2Hash);
     }
 
-    public ProtozoaGenome crossover(ProtozoaGenome other) {
+    /**
+     * @return the genes, or if the network lacks sensors for the retina, a copy of them in
+     * which the network gene holds a copy of the network genome with the sensors added.
+     * Network genomes are shared between genomes, so are never changed in place.
+     */
+    private static Gene<?>[] withRetinaSensors(Gene<?>[] genes) {
+        int networkSlot = -1;
+        int retinaSize = 0;
+        for (int i = 0; i < genes.length; i++) {
+            if (genes[i] instanceof NetworkGene && !genes[i].isDisabled())
+                networkSlot = i;
+            else if (genes[i] instanceof RetinaSizeGene) {
+                RetinaSizeGene retinaSizeGene = (RetinaSizeGene) genes[i];
+                retinaSize = retinaSizeGene.isDisabled() ?
+                        retinaSizeGene.disabledValue() : retinaSizeGene.getValue();
+            }
+        }
+        if (networkSlot < 0)
+            return genes;
+
+        NetworkGene networkGene = (NetworkGene) genes[networkSlot];
+        if (networkGene.getValue().hasRetinaSensors(retinaSize))
+            return genes;
+        NetworkGenome networkGenome = new NetworkGenome(networkGene.getValue());
+        networkGenome.ensureRetinaSensorsExist(retinaSize);
         Gene<?>[] newGenes = Arrays.copyOf(genes, genes.length);
-        for (int i = 0; i < genes.length; i++)
-            newGenes[i] = genes[i].crossover(other.genes[i]);
-        return new ProtozoaGenome(newGenes).ensureCorrectness();
+        newGenes[networkSlot] = networkGene.createNew(networkGenome);
+        return newGenes;
     }
 
-    public <T> T getGeneValue(Class<? extends Gene<T>> clazz) {
+    public ProtozoaGenome crossover(ProtozoaGenome other) {
+        return crossover(other, 0, 0);
+    }
+
+    private ProtozoaGenome crossover(ProtozoaGenome other, int parent1Hash, int parent2Hash) {
+        Gene<?>[] newGenes = genes;
+        // identical genomes are the same instance, and have nothing to exchange
+        if (other != this) {
+            newGenes = Arrays.copyOf(genes, genes.length);
+            for (int i = 0; i < genes.length; i++)
+                newGenes[i] = genes[i].crossover(other.genes[i]);
+        }
+        return new ProtozoaGenome(newGenes, mutationChance, parent1Hash, parent2Hash).ensureCorrectness();
+    }
+
+    private Gene<?> getGene(Class<?> clazz) {
+        Integer slot = geneSlots.get(clazz);
+        if (slot != null && slot < genes.length && clazz.isInstance(genes[slot]))
+            return genes[slot];
         for (Gene<?> gene : genes)
-            if (clazz.isInstance(gene)) {
-                return gene.isDisabled() ?
-                        clazz.cast(gene).disabledValue() :
-                        clazz.cast(gene).getValue();
-            }
+            if (clazz.isInstance(gene))
+                return gene;
         return null;
     }
 
+    public <T> T getGeneValue(Class<? extends Gene<T>> clazz) {
+        Gene<?> gene = getGene(clazz);
+        if (gene == null)
+            return null;
+        return gene.isDisabled() ?
+                clazz.cast(gene).disabledValue() :
+                clazz.cast(gene).getValue();
+    }
+
+    private void decode() {
+        radius = getFloatGeneValue(ProtozoaRadiusGene.class);
+        growthRate = getFloatGeneValue(ProtozoaGrowthRateGene.class);
+        splitRadius = getFloatGeneValue(ProtozoaSplitRadiusGene.class);
+        maxTurn = getFloatGeneValue(ProtozoaMaxTurnGene.class);
+        herbivoreFactor = getFloatGeneValue(HerbivoreFactorGene.class);
+        decoded = true;
+    }
+
     public Brain brain() throws MiscarriageException {
         float maxTurn = getMaxTurn();
         NetworkGenome networkGenome = getGeneValue(NetworkGene.class);
@@ -163,15 +263,21 @@ public class ProtozoaGenome implements Serializable
 
     public float getRadius()
     {
-        return getFloatGeneValue(ProtozoaRadiusGene.class);
+        if (!decoded)
+            decode();
+        return radius;
     }
 
     public float getGrowthRate() {
-        return getFloatGeneValue(ProtozoaGrowthRateGene.class);
+        if (!decoded)
+            decode();
+        return growthRate;
     }
 
     public float getSplitRadius() {
-        return getFloatGeneValue(ProtozoaSplitRadiusGene.class);
+        if (!decoded)
+            decode();
+        return splitRadius;
     }
 
 
@@ -189,13 +295,11 @@ public class ProtozoaGenome implements Serializable
         if (otherGenome == null)
             return createChild(tank);
         tank.registerCrossoverEvent();
-        ProtozoaGenome childGenome = crossover(otherGenome);
-        childGenome.parent1Hash = hashCode();
-        childGenome.parent2Hash = otherGenome.hashCode();
+        ProtozoaGenome childGenome = crossover(otherGenome, hashCode(), otherGenome.hashCode());
         return childGenome.mutate().phenotype(tank);
     }
 
-    public Color getColour() {
+    public int getColour() {
         return getGeneValue(ProtozoaColorGene.class);
     }
 
@@ -211,21 +315,59 @@ public class ProtozoaGenome implements Serializable
     }
 
     public float getMaxTurn() {
-        return getFloatGeneValue(ProtozoaMaxTurnGene.class);
+        if (!decoded)
+            decode();
+        return maxTurn;
     }
 
     public float getHerbivoreFactor() {
-        return getGeneValue(HerbivoreFactorGene.class);
+        if (!decoded)
+            decode();
+        return herbivoreFactor;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o)
+            return true;
+        if (!(o instanceof ProtozoaGenome))
+            return false;
+        ProtozoaGenome other = (ProtozoaGenome) o;
+        if (hashCode() != other.hashCode()
+                || parent1Hash != other.parent1Hash || parent2Hash != other.parent2Hash
+                || mutationChance != other.mutationChance
+                || genes.length != other.genes.length)
+            return false;
+        for (int i = 0; i < genes.length; i++)
+            if (genes[i] != other.genes[i])
+                return false;
+        return true;
+    }
+
+    @Override
+    public int hashCode() {
+        int h = hash;
+        if (h == 0) {
+            h = 31 * parent1Hash + parent2Hash;
+            h = 31 * h + Float.floatToIntBits(mutationChance);
+            for (Gene<?> gene : genes)
+                h = 31 * h + System.identityHashCode(gene);
+            hash = h;
+        }
+        return h;
     }
 
     @Override
     public String toString() {
-        StringBuilder genomeStr = new StringBuilder();
-        genomeStr.append(parent1Hash).append(",");
-        genomeStr.append(parent2Hash).append(",");
-        genomeStr.append(hashCode()).append(",");
-        for (Gene<?> gene : genes)
-            genomeStr.append(gene.toString()).append(",");
-        return genomeStr.toString();
+        if (string == null) {
+            StringBuilder genomeStr = new StringBuilder();
+            genomeStr.append(parent1Hash).append(",");
+            genomeStr.append(parent2Hash).append(",");
+            genomeStr.append(hashCode()).append(",");
+            for (Gene<?> gene : genes)
+                genomeStr.append(gene.toString()).append(",");
+            string = genomeStr.toString();
+        }
+        return string;
     }
 }
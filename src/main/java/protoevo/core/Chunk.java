@@ -36,9 +36,15 @@ public class Chunk implements Serializable {
     }
 
     public Collection<Cell> getCells() {
+        if (Settings.useCountingSortSpatialHash)
+            return chunkManager.getChunkCells(getChunkID());
         return entities;
     }
 
+    public int getChunkID() {
+        return chunkManager.toChunkID(x, y);
+    }
+
     public void addEntity(Cell e) {
         entities.add(e);
     }
@@ -65,10 +71,18 @@ public class Chunk implements Serializable {
     }
 
     public Iterator<Collidable> getCollidables() {
-        return Iterators.concat(entities.iterator(), rocks.iterator());
+        return Iterators.concat(getCells().iterator(), rocks.iterator());
     }
 
     public Collection<Rock> getRocks() {
         return rocks;
     }
+
+    List<Cell> getCellList() {
+        return entities;
+    }
+
+    List<Rock> getRockList() {
+        return rocks;
+    }
 }
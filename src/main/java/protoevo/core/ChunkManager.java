@@ -6,10 +6,8 @@ import protoevo.env.Rock;
 import protoevo.utils.Vector2;
 
 import java.io.Serializable;
-import java.util.ArrayList;
-import java.util.Collection;
-import java.util.Iterator;
-import java.util.List;
+import java.util.*;
+import java.util.function.Consumer;
 import java.util.function.Function;
 
 public class ChunkManager implements Serializable {
@@ -25,6 +23,16 @@ public class ChunkManager implements Serializable {
     private final Chunk[] chunks;
     private final List<Cell> entities = new ArrayList<>();
 
+    private static final int parallelSortThreshold = 4096;
+    private transient int[] cellChunkIDs, chunkStarts, blockCounts;
+    private transient Cell[] sortedCells;
+    private transient int nSortedCells;
+    private transient int[][][] chunkColouring;
+    private transient int colouringTileSize;
+    private transient float maxCellRadius;
+    private transient int neighbourListGeneration;
+    private transient volatile boolean neighbourListsStale;
+
     public ChunkManager(float xMin, float xMax,
                         float yMin, float yMax,
                         float chunkSize) {
@@ -75,6 +83,157 @@ public class ChunkManager implements Serializable {
         return broadScan(pos, range, chunk -> chunk.getCells().iterator());
     }
 
+    /**
+     * Calls the consumer on every cell whose disc overlaps the circle of the given range
+     * about (x, y), followed by the rocks in the chunks covering that circle, in chunk order.
+     * Unlike {@link #broadCollisionDetection(Vector2, float)} this walks the chunks with plain
+     * loops and allocates nothing.
+     */
+    public void forEachInRange(float x, float y, float range, Consumer<? super Collidable> consumer) {
+        int iMin = toChunkX(x - range), iMax = toChunkX(x + range);
+        int jMin = toChunkY(y - range), jMax = toChunkY(y + range);
+        for (int i = iMin; i <= iMax; i++)
+            for (int j = jMin; j <= jMax; j++) {
+                int chunkID = toChunkID(i, j);
+                forEachCellInChunk(chunkID, x, y, range, consumer);
+                forEachRockInChunk(chunkID, consumer);
+            }
+    }
+
+    public void forEachInRange(Vector2 pos, float range, Consumer<? super Collidable> consumer) {
+        forEachInRange(pos.getX(), pos.getY(), range, consumer);
+    }
+
+    public void forEachCellInRange(float x, float y, float range, Consumer<? super Cell> consumer) {
+        int iMin = toChunkX(x - range), iMax = toChunkX(x + range);
+        int jMin = toChunkY(y - range), jMax = toChunkY(y + range);
+        for (int i = iMin; i <= iMax; i++)
+            for (int j = jMin; j <= jMax; j++)
+                forEachCellInChunk(toChunkID(i, j), x, y, range, consumer);
+    }
+
+    public void forEachCellInRange(Vector2 pos, float range, Consumer<? super Cell> consumer) {
+        forEachCellInRange(pos.getX(), pos.getY(), range, consumer);
+    }
+
+    /**
+     * Visits every cell in the chunks covering the circle without distance filtering,
+     * matching the candidates given by {@link #broadEntityDetection(Vector2, float)}.
+     */
+    public void forEachCellInChunks(float x, float y, float range, Consumer<? super Cell> consumer) {
+        int iMin = toChunkX(x - range), iMax = toChunkX(x + range);
+        int jMin = toChunkY(y - range), jMax = toChunkY(y + range);
+        for (int i = iMin; i <= iMax; i++)
+            for (int j = jMin; j <= jMax; j++)
+                forEachCellInChunk(toChunkID(i, j), x, y, Float.POSITIVE_INFINITY, consumer);
+    }
+
+    /**
+     * Rocks are not distance filtered, and a rock spanning several chunks
+     * is visited once for each of them.
+     */
+    public void forEachRockInRange(float x, float y, float range, Consumer<? super Rock> consumer) {
+        int iMin = toChunkX(x - range), iMax = toChunkX(x + range);
+        int jMin = toChunkY(y - range), jMax = toChunkY(y + range);
+        for (int i = iMin; i <= iMax; i++)
+            for (int j = jMin; j <= jMax; j++)
+                forEachRockInChunk(toChunkID(i, j), consumer);
+    }
+
+    private void forEachCellInChunk(int chunkID, float x, float y, float range,
+                                    Consumer<? super Cell> consumer) {
+        if (Settings.useCountingSortSpatialHash) {
+            if (sortedCells == null)
+                return;
+            for (int k = chunkStarts[chunkID]; k < chunkStarts[chunkID + 1]; k++)
+                acceptIfInRange(sortedCells[k], x, y, range, consumer);
+        } else {
+            List<Cell> cells = chunks[chunkID].getCellList();
+            for (int k = 0; k < cells.size(); k++)
+                acceptIfInRange(cells.get(k), x, y, range, consumer);
+        }
+    }
+
+    /**
+     * Splits the chunks, in id order, into contiguous ranges each holding roughly the
+     * given number of cells, for running per-cell work in chunk-local parallel batches.
+     * @return batch boundaries, where batch k covers the chunk ids
+     * {@code [batches[k], batches[k + 1])}.
+     */
+    public int[] getChunkBatches(int cellsPerBatch) {
+        int nChunks = chunks.length;
+        int[] batches = new int[nChunks + 1];
+        int nBatches = 0, count = 0;
+        for (int id = 0; id < nChunks; id++) {
+            if (count >= cellsPerBatch) {
+                batches[++nBatches] = id;
+                count = 0;
+            }
+            count += Settings.useCountingSortSpatialHash
+                    ? getChunkEnd(id) - getChunkStart(id)
+                    : chunks[id].getCellList().size();
+        }
+        batches[++nBatches] = nChunks;
+        return Arrays.copyOf(batches, nBatches + 1);
+    }
+
+    public void forEachCellInChunk(int chunkID, Consumer<? super Cell> consumer) {
+        forEachCellInChunk(chunkID, 0, 0, Float.POSITIVE_INFINITY, consumer);
+    }
+
+    /**
+     * Groups the chunks into square tiles at least the given reach across, and colours the
+     * tiles in a 3x3 pattern. Two tiles of the same colour are then separated by at least two
+     * tiles, so any work that only touches cells within the reach of cells in its own tile
+     * can run on all the tiles of one colour in parallel without two threads sharing a cell.
+     * @return for each colour, the tiles of that colour as arrays of chunk ids.
+     */
+    public int[][][] getChunkColouring(float reach) {
+        int tileSize = Math.max(1, (int) Math.ceil(reach / chunkSize));
+        if (chunkColouring != null && colouringTileSize == tileSize)
+            return chunkColouring;
+
+        int nXTiles = (nXChunks + tileSize - 1) / tileSize;
+        int nYTiles = (nYChunks + tileSize - 1) / tileSize;
+        List<List<int[]>> colours = new ArrayList<>();
+        for (int c = 0; c < 9; c++)
+            colours.add(new ArrayList<>());
+
+        for (int ti = 0; ti < nXTiles; ti++)
+            for (int tj = 0; tj < nYTiles; tj++) {
+                int iMax = Math.min(nXChunks, (ti + 1) * tileSize);
+                int jMax = Math.min(nYChunks, (tj + 1) * tileSize);
+                int[] tile = new int[(iMax - ti * tileSize) * (jMax - tj * tileSize)];
+                int k = 0;
+                for (int i = ti * tileSize; i < iMax; i++)
+                    for (int j = tj * tileSize; j < jMax; j++)
+                        tile[k++] = toChunkID(i, j);
+                colours.get(3 * (ti % 3) + (tj % 3)).add(tile);
+            }
+
+        chunkColouring = colours.stream()
+                .filter(tiles -> !tiles.isEmpty())
+                .map(tiles -> tiles.toArray(new int[0][]))
+                .toArray(int[][][]::new);
+        colouringTileSize = tileSize;
+        return chunkColouring;
+    }
+
+    private static void acceptIfInRange(Cell cell, float x, float y, float range,
+                                        Consumer<? super Cell> consumer) {
+        float dx = cell.getPosX() - x;
+        float dy = cell.getPosY() - y;
+        float reach = range + cell.getRadius();
+        if (dx*dx + dy*dy < reach*reach)
+            consumer.accept(cell);
+    }
+
+    public void forEachRockInChunk(int chunkID, Consumer<? super Rock> consumer) {
+        List<Rock> rocks = chunks[chunkID].getRockList();
+        for (int k = 0; k < rocks.size(); k++)
+            consumer.accept(rocks.get(k));
+    }
+
     public int toChunkX(float tankX) {
         int i = (int) (1 + (tankX - xMin) / chunkSize);
         if (i < 0)
@@ -148,11 +307,138 @@ public class ChunkManager implements Serializable {
     }
 
     public void update() {
-        for (Chunk chunk : chunks)
-            chunk.clear();
+        // the counting sort is read instead of the chunks' cell lists, which it empties once
+        if (!Settings.useCountingSortSpatialHash)
+            for (Chunk chunk : chunks)
+                chunk.clear();
 
         entities.removeIf(Cell::isDead);
-        entities.forEach(this::allocateToChunk);
+        if (Settings.useCountingSortSpatialHash)
+            countingSortIntoChunks();
+        else
+            entities.forEach(this::allocateToChunk);
+
+        maxCellRadius = 0;
+        for (Cell e : entities)
+            maxCellRadius = Math.max(maxCellRadius, e.getRadius());
+    }
+
+    /**
+     * @return the largest cell radius as of the last {@link #update()}.
+     */
+    public float getMaxCellRadius() {
+        return maxCellRadius;
+    }
+
+    /**
+     * @return the generation of the particles' neighbour lists: a list built in an earlier
+     * generation may be missing a neighbour, so must be rebuilt.
+     */
+    public int getNeighbourListGeneration() {
+        return neighbourListGeneration;
+    }
+
+    /**
+     * Marks the neighbour lists as stale, to be rebuilt from the next
+     * {@link #advanceNeighbourListGeneration()}.
+     */
+    public void requestNeighbourListRebuild() {
+        neighbourListsStale = true;
+    }
+
+    /**
+     * Starts a new generation of neighbour lists if a rebuild has been requested. Called
+     * only between substeps, when no particle is stepping, so that every particle sees the
+     * same generation throughout a substep however the work is scheduled.
+     */
+    public void advanceNeighbourListGeneration() {
+        if (neighbourListsStale) {
+            neighbourListGeneration++;
+            neighbourListsStale = false;
+        }
+    }
+
+    /**
+     * Rebuilds the spatial hash by counting sort: every cell's chunk id is computed, the
+     * cells are counted per chunk, and then scattered into one flat array so that each
+     * chunk's contents form a contiguous slice {@code [getChunkStart(id), getChunkEnd(id))}
+     * of {@link #getSortedCells()}. Cells keep their relative order within a chunk.
+     * <p>
+     * Above a threshold the entities are split into blocks that are counted and scattered
+     * in parallel, each block writing to its own precomputed offsets.
+     */
+    private void countingSortIntoChunks() {
+        int nChunks = chunks.length;
+        int n = entities.size();
+        if (sortedCells == null) {
+            // lists may hold stale contents from a save made with the per-chunk list rebuild
+            for (Chunk chunk : chunks)
+                chunk.clear();
+            chunkStarts = new int[nChunks + 1];
+        }
+        if (sortedCells == null || sortedCells.length < n) {
+            int capacity = Math.max(1024, n + n / 2);
+            sortedCells = new Cell[capacity];
+            cellChunkIDs = new int[capacity];
+            nSortedCells = 0;
+        }
+
+        int nBlocks = n < parallelSortThreshold ? 1 : SimulationExecutor.getParallelism();
+        int blockSize = (n + nBlocks - 1) / Math.max(1, nBlocks);
+        if (blockCounts == null || blockCounts.length < nBlocks * nChunks)
+            blockCounts = new int[nBlocks * nChunks];
+        else
+            Arrays.fill(blockCounts, 0, nBlocks * nChunks, 0);
+
+        SimulationExecutor.forEach(nBlocks, b -> {
+            int offset = b * nChunks;
+            for (int k = b * blockSize; k < Math.min(n, (b + 1) * blockSize); k++) {
+                Vector2 pos = entities.get(k).getPos();
+                int id = toChunkID(pos.getX(), pos.getY());
+                cellChunkIDs[k] = id;
+                blockCounts[offset + id]++;
+            }
+        });
+
+        // exclusive prefix sum in (chunk, block) order, leaving each block's write offset
+        int total = 0;
+        for (int id = 0; id < nChunks; id++) {
+            chunkStarts[id] = total;
+            for (int b = 0; b < nBlocks; b++) {
+                int count = blockCounts[b * nChunks + id];
+                blockCounts[b * nChunks + id] = total;
+                total += count;
+            }
+        }
+        chunkStarts[nChunks] = total;
+
+        SimulationExecutor.forEach(nBlocks, b -> {
+            int offset = b * nChunks;
+            for (int k = b * blockSize; k < Math.min(n, (b + 1) * blockSize); k++)
+                sortedCells[blockCounts[offset + cellChunkIDs[k]]++] = entities.get(k);
+        });
+
+        if (n < nSortedCells)
+            Arrays.fill(sortedCells, n, nSortedCells, null);
+        nSortedCells = n;
+    }
+
+    public Cell[] getSortedCells() {
+        return sortedCells;
+    }
+
+    public int getChunkStart(int chunkID) {
+        return chunkStarts == null ? 0 : chunkStarts[chunkID];
+    }
+
+    public int getChunkEnd(int chunkID) {
+        return chunkStarts == null ? 0 : chunkStarts[chunkID + 1];
+    }
+
+    public List<Cell> getChunkCells(int chunkID) {
+        if (sortedCells == null)
+            return Collections.emptyList();
+        return Arrays.asList(sortedCells).subList(getChunkStart(chunkID), getChunkEnd(chunkID));
     }
 
     public float getChunkSize() {
@@ -2,15 +2,24 @@ package protoevo.core;
 
 import protoevo.utils.Vector2;
 
-import java.awt.*;
-
 public abstract class Collidable {
 
     public abstract boolean pointInside(Vector2 p);
+    public abstract boolean pointInside(float x, float y);
     public abstract boolean rayIntersects(Vector2 start, Vector2 end);
     public abstract Vector2[] rayCollisions(Vector2 start, Vector2 end);
 
-    public abstract Color getColor();
+    /**
+     * Allocation-free counterpart to {@link #rayCollisions(Vector2, Vector2)}.
+     * @return the squared distance from start to the nearest collision point, or
+     * Float.MAX_VALUE if the ray does not collide with this object.
+     */
+    public abstract float rayCollisionSqLen(float startX, float startY, float endX, float endY);
+
+    /**
+     * @return the colour packed as ARGB, see {@link protoevo.utils.Colour}.
+     */
+    public abstract int getColor();
 
     public abstract Vector2[] getBoundingBox();
 
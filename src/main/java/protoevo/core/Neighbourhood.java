@@ -0,0 +1,116 @@
+package protoevo.core;
+
+import protoevo.biology.Cell;
+
+import java.util.Arrays;
+import java.util.function.Consumer;
+
+/**
+ * The cells and rocks around a particle, gathered by a single broad-phase scan of the
+ * {@link ChunkManager} at the largest range anything looks around the particle in one tick.
+ * <p>
+ * Each entry keeps the chunk it was found in, so that queries whose circle lies inside the
+ * circle scanned can be answered from the entries alone, giving the same objects in the same
+ * order as the equivalent query on the chunk manager. Distances are measured when a query is
+ * made, so the answer stays exact as long as nothing has moved further than the gap between
+ * the two circles since the scan.
+ */
+public class Neighbourhood implements Consumer<Collidable> {
+
+    private Collidable[] entries = new Collidable[16];
+    private int[] chunkXs = new int[16], chunkYs = new int[16];
+    private int size;
+    private boolean valid = false;
+
+    private ChunkManager chunkManager;
+    private float x, y, range;
+    private int scanChunkX, scanChunkY;
+    private int generation;
+
+    /**
+     * Gathers the same objects as {@link ChunkManager#forEachInRange(float, float, float, Consumer)}.
+     */
+    public void build(ChunkManager chunkManager, float x, float y, float range) {
+        Arrays.fill(entries, 0, size, null);
+        size = 0;
+        this.chunkManager = chunkManager;
+        this.x = x;
+        this.y = y;
+        this.range = range;
+        this.generation = chunkManager.getNeighbourListGeneration();
+        int iMin = chunkManager.toChunkX(x - range), iMax = chunkManager.toChunkX(x + range);
+        int jMin = chunkManager.toChunkY(y - range), jMax = chunkManager.toChunkY(y + range);
+        for (int i = iMin; i <= iMax; i++) {
+            for (int j = jMin; j <= jMax; j++) {
+                scanChunkX = i;
+                scanChunkY = j;
+                int chunkID = chunkManager.toChunkID(i, j);
+                chunkManager.forEachCellInChunk(chunkID, this);
+                chunkManager.forEachRockInChunk(chunkID, this);
+            }
+        }
+        valid = true;
+    }
+
+    @Override
+    public void accept(Collidable o) {
+        if (o instanceof Cell && !inRange((Cell) o, x, y, range))
+            return;
+        if (size == entries.length) {
+            entries = Arrays.copyOf(entries, 2 * size);
+            chunkXs = Arrays.copyOf(chunkXs, 2 * size);
+            chunkYs = Arrays.copyOf(chunkYs, 2 * size);
+        }
+        entries[size] = o;
+        chunkXs[size] = scanChunkX;
+        chunkYs[size] = scanChunkY;
+        size++;
+    }
+
+    private boolean inRange(Cell cell, float x, float y, float range) {
+        float dx = cell.getPosX() - x;
+        float dy = cell.getPosY() - y;
+        float reach = range + cell.getRadius();
+        return dx*dx + dy*dy < reach*reach;
+    }
+
+    public boolean isValid() {
+        return valid;
+    }
+
+    public void invalidate() {
+        valid = false;
+    }
+
+    /**
+     * @return whether queries about the given centre, up to the given range, can be answered
+     * from this neighbourhood: the circle queried must lie inside the circle scanned, and
+     * once the neighbour lists have been invalidated, something may have moved too far
+     * since the scan.
+     */
+    public boolean covers(float x, float y, float range) {
+        if (!valid || generation != chunkManager.getNeighbourListGeneration())
+            return false;
+        float gap = this.range - range;
+        float dx = x - this.x, dy = y - this.y;
+        return gap >= 0 && dx*dx + dy*dy <= gap*gap;
+    }
+
+    /**
+     * Same as {@link ChunkManager#forEachInRange(float, float, float, Consumer)}, for a query
+     * this neighbourhood {@link #covers(float, float, float) covers}.
+     */
+    public void forEachInRange(float x, float y, float range, Consumer<? super Collidable> consumer) {
+        int iMin = chunkManager.toChunkX(x - range), iMax = chunkManager.toChunkX(x + range);
+        int jMin = chunkManager.toChunkY(y - range), jMax = chunkManager.toChunkY(y + range);
+        for (int k = 0; k < size; k++) {
+            int i = chunkXs[k], j = chunkYs[k];
+            if (i < iMin || i > iMax || j < jMin || j > jMax)
+                continue;
+            Collidable o = entries[k];
+            if (o instanceof Cell && !inRange((Cell) o, x, y, range))
+                continue;
+            consumer.accept(o);
+        }
+    }
+}
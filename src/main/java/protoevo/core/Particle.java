@@ -2,12 +2,13 @@ package protoevo.core;
 
 import protoevo.env.Rock;
 import protoevo.env.Tank;
+import protoevo.utils.Colour;
 import protoevo.utils.Geometry;
 import protoevo.utils.Vector2;
 
-import java.awt.*;
 import java.io.Serializable;
-import java.util.Iterator;
+import java.util.Arrays;
+import java.util.function.Consumer;
 
 public class Particle extends Collidable implements Serializable {
 
@@ -17,6 +18,15 @@ public class Particle extends Collidable implements Serializable {
     private float radius;
     private final Tank tank;
     private int recentRigidCollisions;
+    private transient Collidable[] neighbours;
+    private transient int nNeighbours;
+    private transient boolean neighboursValid;
+    private transient float neighboursBuiltX, neighboursBuiltY;
+    private transient int neighboursGeneration;
+    private transient Consumer<Collidable> neighbourCollector;
+    private transient Consumer<Collidable> collisionHandler;
+    private transient float collisionDelta;
+    private transient Neighbourhood neighbourhood;
 
     public Particle(Tank tank) {
         this.tank = tank;
@@ -25,6 +35,9 @@ public class Particle extends Collidable implements Serializable {
     public void resetPhysics() {
         acc.set(0, 0);
         recentRigidCollisions = 0;
+        neighboursValid = false;
+        if (neighbourhood != null)
+            neighbourhood.invalidate();
     }
 
     public void physicsUpdate(float delta) {
@@ -34,50 +47,164 @@ public class Particle extends Collidable implements Serializable {
     }
 
     public void physicsStep(float delta) {
-        ChunkManager chunkManager = tank.getChunkManager();
-        Iterator<Collidable> entities = chunkManager.broadCollisionDetection(getPos(), radius);
-        entities.forEachRemaining(o -> handlePotentialCollision(o, delta));
+        if (Settings.neighbourListSkin > 0) {
+            updateNeighbourList();
+            for (int i = 0; i < nNeighbours; i++)
+                handlePotentialCollision(neighbours[i], delta);
+        } else {
+            if (collisionHandler == null)
+                collisionHandler = o -> handlePotentialCollision(o, collisionDelta);
+            collisionDelta = delta;
+            ChunkManager chunkManager = tank.getChunkManager();
+            chunkManager.forEachInRange(getPosX(), getPosY(), getCollisionRange(), collisionHandler);
+        }
         if (prevPos == null)
             prevPos = pos.copy();
 
-        if (delta != 0)
-            vel = pos.sub(prevPos).scale(1 / delta);
-        else
+        if (delta == 0)
             return;
 
+        if (vel == null)
+            vel = new Vector2(0, 0);
+        pos.subInto(prevPos, vel).scale(1 / delta);
+
         move(delta);
+        checkNeighbourListDisplacement();
+    }
+
+    /**
+     * Collects the candidates within the collision range plus a skin of
+     * {@link Settings#neighbourListSkin}, so that the list can be reused across the substeps
+     * of a tick. It is rebuilt every tick, since the chunks are, and within a tick once
+     * this particle has moved more than half the skin from where it was built, or the
+     * {@link ChunkManager#getNeighbourListGeneration() generation} of the lists has moved on.
+     */
+    private void updateNeighbourList() {
+        ChunkManager chunkManager = tank.getChunkManager();
+        int generation = chunkManager.getNeighbourListGeneration();
+        float x = getPosX(), y = getPosY();
+        if (neighboursValid && neighboursGeneration == generation && !movedHalfSkin(x, y))
+            return;
+
+        if (neighbours == null) {
+            neighbours = new Collidable[16];
+            neighbourCollector = this::addNeighbour;
+        }
+        Arrays.fill(neighbours, 0, nNeighbours, null);
+        nNeighbours = 0;
+        float range = getCollisionRange() + Settings.neighbourListSkin;
+        if (Settings.useSharedNeighbourhoods && neighbourhood != null && neighbourhood.covers(x, y, range))
+            neighbourhood.forEachInRange(x, y, range, neighbourCollector);
+        else
+            chunkManager.forEachInRange(x, y, range, neighbourCollector);
+        neighboursBuiltX = x;
+        neighboursBuiltY = y;
+        neighboursGeneration = generation;
+        neighboursValid = true;
+    }
+
+    private boolean movedHalfSkin(float x, float y) {
+        float dx = x - neighboursBuiltX, dy = y - neighboursBuiltY;
+        float halfSkin = Settings.neighbourListSkin / 2f;
+        return dx*dx + dy*dy > halfSkin * halfSkin;
+    }
+
+    /**
+     * The Verlet rule: no pair can have closed the skin between their lists while every
+     * particle is within half the skin of where its list was built. Once this particle is
+     * further, every list is rebuilt, not only its own, since a particle that has not
+     * moved can be missing it. The rebuild is only requested here, and starts at the next
+     * barrier between substeps, see {@link ChunkManager#advanceNeighbourListGeneration()}.
+     */
+    private void checkNeighbourListDisplacement() {
+        if (!neighboursValid || Settings.neighbourListSkin <= 0)
+            return;
+        if (movedHalfSkin(getPosX(), getPosY()))
+            tank.getChunkManager().requestNeighbourListRebuild();
+    }
+
+    private void addNeighbour(Collidable o) {
+        if (nNeighbours == neighbours.length)
+            neighbours = Arrays.copyOf(neighbours, 2 * nNeighbours);
+        neighbours[nNeighbours++] = o;
+    }
+
+    /**
+     * The objects around this particle this tick, scanned at {@link #getNeighbourhoodRange()}
+     * on the first call after {@link #resetPhysics()}. Interactions during the update and the
+     * first neighbour list of the physics substeps are answered from it, rather than each
+     * scanning the chunks again.
+     */
+    public Neighbourhood getNeighbourhood() {
+        if (neighbourhood == null)
+            neighbourhood = new Neighbourhood();
+        if (!neighbourhood.isValid())
+            neighbourhood.build(tank.getChunkManager(), getPosX(), getPosY(), getNeighbourhoodRange());
+        return neighbourhood;
+    }
+
+    /**
+     * @return the largest range this particle looks around itself in during a tick.
+     */
+    protected float getNeighbourhoodRange() {
+        return getCollisionRange() + Settings.neighbourListSkin;
+    }
+
+    /**
+     * @return the distance from the centre of this particle within which other particles are
+     * passed to {@link #handlePotentialCollision(Collidable, float)}.
+     */
+    protected float getCollisionRange() {
+        return getRadius();
     }
 
     public void move(float delta)
     {
-        Vector2 verletVel = pos.sub(prevPos).scale(1f - Settings.tankFluidResistance);
-        Vector2 dx = verletVel.translate(acc.mul(delta * delta));
-        if (dx.len2() > Settings.maxParticleSpeed * Settings.maxParticleSpeed)
-            dx.setLength(Settings.maxParticleSpeed);
+        float dx = (pos.getX() - prevPos.getX()) * (1f - Settings.tankFluidResistance) + acc.getX() * (delta * delta);
+        float dy = (pos.getY() - prevPos.getY()) * (1f - Settings.tankFluidResistance) + acc.getY() * (delta * delta);
+        float len2 = dx*dx + dy*dy;
+        if (len2 > Settings.maxParticleSpeed * Settings.maxParticleSpeed) {
+            float len = (float) Math.sqrt(len2);
+            dx *= Settings.maxParticleSpeed / len;
+            dy *= Settings.maxParticleSpeed / len;
+        }
         prevPos.set(pos);
-        pos.translate(dx);
+        pos.translate(dx, dy);
     }
 
     public void handleBindingConstraint(Particle attached) {
-        Vector2 axis = getPos().sub(attached.getPos());
-        float dist = axis.len();
+        float axisX = getPosX() - attached.getPosX();
+        float axisY = getPosY() - attached.getPosY();
+        float dist = (float) Math.sqrt(axisX*axisX + axisY*axisY);
         float targetDist = 1.1f * (getRadius() + attached.getRadius());
         float offset = targetDist - dist;
-        Vector2 axisNorm = axis.unit();
+        if (dist != 0) {
+            axisX /= dist;
+            axisY /= dist;
+        }
         float myMass = getMass();
         float theirMass = attached.getMass();
         float p = myMass / (myMass + theirMass);
-        getPos().translate(axisNorm.mul((1 - p) * offset));
-        attached.getPos().translate(axisNorm.mul(-p * offset));
+        translatePos(axisX * ((1 - p) * offset), axisY * ((1 - p) * offset));
+        attached.translatePos(axisX * (-p * offset), axisY * (-p * offset));
     }
 
     public void accelerate(Vector2 da) {
-        acc.translate(da);
+        accelerate(da.getX(), da.getY());
+    }
+
+    public void accelerate(float dx, float dy) {
+        acc.translate(dx, dy);
     }
 
     @Override
     public boolean pointInside(Vector2 p) {
-        return Geometry.isPointInsideCircle(getPos(), getRadius(), p);
+        return pointInside(p.getX(), p.getY());
+    }
+
+    @Override
+    public boolean pointInside(float x, float y) {
+        return Geometry.isPointInsideCircle(getPosX(), getPosY(), getRadius(), x, y);
     }
 
     @Override
@@ -111,6 +238,12 @@ public class Particle extends Collidable implements Serializable {
         return null;
     }
 
+    @Override
+    public float rayCollisionSqLen(float startX, float startY, float endX, float endY) {
+        return Geometry.rayCircleCollisionSqLen(
+                startX, startY, endX, endY, getPosX(), getPosY(), getRadius());
+    }
+
     @Override
     public boolean handlePotentialCollision(Collidable other, float delta) {
         if (other instanceof Particle)
@@ -123,22 +256,44 @@ public class Particle extends Collidable implements Serializable {
     public void onParticleCollisionCallback(Particle p, float delta) {}
 
     public void handleParticleCollision(Particle p, float delta) {
-        float mr = p.getMass() / (p.getMass() + getMass());
-        Vector2 axis = getPos().sub(p.getPos());
-        float dist = axis.len();
+        float theirMass = p.getMass();
+        float mr = theirMass / (theirMass + getMass());
+        float axisX = getPosX() - p.getPosX();
+        float axisY = getPosY() - p.getPosY();
+        float dist = (float) Math.sqrt(axisX*axisX + axisY*axisY);
         float targetDist = (getRadius() + p.getRadius());
         float offset = targetDist - dist;
-        Vector2 axisNorm = axis.unit();
-        getPos().translate(axisNorm.mul(mr * offset));
-        p.getPos().translate(axisNorm.mul(-(1 - mr) * offset));
+        if (dist != 0) {
+            axisX /= dist;
+            axisY /= dist;
+        }
+        translatePos(axisX * (mr * offset), axisY * (mr * offset));
+        p.translatePos(axisX * (-(1 - mr) * offset), axisY * (-(1 - mr) * offset));
         onParticleCollisionCallback(p, delta);
+        if (isResolvedPairwise(p))
+            p.onParticleCollisionCallback(this, delta);
+    }
+
+    /**
+     * In {@link Settings#pairwiseCollisions} mode a pair of particles is only resolved from
+     * the side with the lower {@link #getRandomKey() key}, which then applies the collision
+     * callbacks of both sides, rather than each particle resolving the pair again.
+     * The rare pair with equal keys is resolved from both sides, as without the mode.
+     */
+    private boolean isResolvedPairwise(Particle e) {
+        return Settings.pairwiseCollisions && getRandomKey() != e.getRandomKey();
     }
 
     public boolean handlePotentialCollision(Particle e, float delta) {
         if (e == this)
             return false;
 
-        float sqDist = e.getPos().squareDistanceTo(getPos());
+        if (isResolvedPairwise(e) && e.getRandomKey() < getRandomKey())
+            return false;
+
+        float dx = e.getPosX() - getPosX();
+        float dy = e.getPosY() - getPosY();
+        float sqDist = dx*dx + dy*dy;
         float r = getRadius() + e.getRadius();
 
         if (sqDist < r*r)
@@ -151,24 +306,25 @@ public class Particle extends Collidable implements Serializable {
 
     public boolean handlePotentialCollision(Rock rock, float delta) {
         Vector2[][] edges = rock.getEdges();
-        Vector2 pos = getPos();
         float r = getRadius();
 
         for (int i = 0; i < edges.length; i++) {
             Vector2[] edge = edges[i];
             Vector2 normal = rock.getNormals()[i];
-            Vector2 dir = edge[1].sub(edge[0]);
-            Vector2 x = pos.sub(edge[0]);
+            float dirX = edge[1].getX() - edge[0].getX();
+            float dirY = edge[1].getY() - edge[0].getY();
+            float xX = getPosX() - edge[0].getX();
+            float xY = getPosY() - edge[0].getY();
 
-            if (dir.dot(normal) > 0)
+            if (normal.dot(dirX, dirY) > 0)
                 continue;
 
-            float[] coefs = Geometry.circleIntersectLineCoefficients(dir, x, r);
-            if (Geometry.lineIntersectCondition(coefs)) {
-                float t1 = coefs[0], t2 = coefs[1];
-                float t = (t1 + t2) / 2f;
-                float offset = r - x.sub(dir.mul(t)).len();
-                pos.translate(normal.mul(offset));
+            float t = Geometry.circleIntersectLineMidpoint(dirX, dirY, xX, xY, r);
+            if (!Float.isNaN(t)) {
+                float offX = xX - dirX * t;
+                float offY = xY - dirY * t;
+                float offset = r - (float) Math.sqrt(offX*offX + offY*offY);
+                translatePos(normal.getX() * offset, normal.getY() * offset);
                 recentRigidCollisions++;
                 onRockCollisionCallback(rock, delta);
                 return true;
@@ -188,13 +344,14 @@ public class Particle extends Collidable implements Serializable {
     public boolean isCollidingWith(Rock rock) {
         Vector2[][] edges = rock.getEdges();
         float r = getRadius();
-        Vector2 pos = getPos();
+        float x = getPosX(), y = getPosY();
 
-        if (rock.pointInside(pos))
+        if (rock.pointInside(x, y))
             return true;
 
         for (Vector2[] edge : edges) {
-            if (Geometry.doesLineIntersectCircle(edge, pos, r))
+            if (Geometry.doesLineIntersectCircle(
+                    edge[0].getX(), edge[0].getY(), edge[1].getX(), edge[1].getY(), x, y, r))
                 return true;
         }
         return false;
@@ -205,13 +362,36 @@ public class Particle extends Collidable implements Serializable {
         if (other == this)
             return false;
         float r = getRadius() + other.getRadius();
-        return other.getPos().squareDistanceTo(getPos()) < r*r;
+        float dx = other.getPosX() - getPosX();
+        float dy = other.getPosY() - getPosY();
+        return dx*dx + dy*dy < r*r;
     }
 
     public Vector2 getPos() {
         return pos;
     }
 
+    /**
+     * @return a key that identifies the particle for as long as it exists, however the tank
+     * stores it, or 0 for particles that have none.
+     */
+    public long getRandomKey() {
+        return 0;
+    }
+
+    public float getPosX() {
+        return pos.getX();
+    }
+
+    public float getPosY() {
+        return pos.getY();
+    }
+
+    public void translatePos(float dx, float dy) {
+        pos.translate(dx, dy);
+        checkNeighbourListDisplacement();
+    }
+
     public void setPos(Vector2 pos) {
         this.pos = pos;
     }
@@ -245,8 +425,8 @@ public class Particle extends Collidable implements Serializable {
     }
 
     public Vector2[] getBoundingBox() {
-        float x = pos.getX();
-        float y = pos.getY();
+        float x = getPosX();
+        float y = getPosY();
         float r = getRadius();
         return new Vector2[]{new Vector2(x - r, y - r), new Vector2(x + r, y + r)};
     }
@@ -272,7 +452,7 @@ public class Particle extends Collidable implements Serializable {
     }
 
     @Override
-    public Color getColor() {
-        return Color.WHITE.darker();
+    public int getColor() {
+        return Colour.darker(Colour.WHITE);
     }
 }
@@ -8,6 +8,7 @@ import protoevo.biology.*;
 import protoevo.env.ChemicalSolution;
 import protoevo.env.Rock;
 import protoevo.env.Tank;
+import protoevo.utils.Colour;
 import protoevo.utils.Utils;
 import protoevo.utils.Vector2;
 import protoevo.utils.Window;
@@ -74,7 +75,7 @@ public class Renderer extends Canvas
 		Vector2 pos = toRenderSpace(p.getPos());
 		float r = toRenderSpace(p.getRadius());
 		
-		Color c = p.getColor();
+		Color c = new Color(p.getColor(), true);
 
 		float dt 	= p.getRetina().getCellAngle();
 		float fov 	= p.getRetina().getFov();
@@ -94,7 +95,7 @@ public class Renderer extends Canvas
 			float constructionProgress = p.getRetina().getHealth();
 			for (Retina.Cell cell : p.getRetina()) {
 				if (cell.anythingVisible()) {
-					Color col = cell.getColour();
+					Color col = new Color(cell.getColour(), true);
 					g.setColor(col);
 				} else {
 					if (constructionProgress < 1)
@@ -154,15 +155,15 @@ public class Renderer extends Canvas
 		if (circleNotVisible(pos, r))
 			return;
 		if (!p.wasJustDamaged) {
-			drawOutlinedCircle(g, pos, r, p.getColor());
+			drawOutlinedCircle(g, pos, r, new Color(p.getColor(), true));
 		} else {
-			drawOutlinedCircle(g, pos, r, p.getColor(), Color.RED);
+			drawOutlinedCircle(g, pos, r, new Color(p.getColor(), true), Color.RED);
 		}
 
 		for (Protozoan.Spike spike : p.getSpikes()) {
 			if (r > 0.001 * window.getHeight()) {
 				Stroke s = g.getStroke();
-				g.setColor(p.getColor().darker().darker());
+				g.setColor(new Color(p.getColor(), true).darker().darker());
 				g.setStroke(new BasicStroke((int) (r * 0.2)));
 				Vector2 spikeStartPos = p.getDir().unit().rotate(spike.angle).setLength(r).translate(pos);
 				float spikeLen = toRenderSpace(p.getSpikeLength(spike));
@@ -191,11 +192,11 @@ public class Renderer extends Canvas
 					int y = (int) (radius * (-0.1 + Math.sin(t + t0)) + pos.getY());
 					nucleus.addPoint(x, y);
 				}
-				Color b = p.getMate().getColor().brighter();
+				Color b = new Color(p.getMate().getColor(), true).brighter();
 				g.setColor(new Color(b.getRed(), b.getGreen(), b.getBlue(), 50));
 				g.fillPolygon(nucleus);
 			}
-			Color b = p.getColor().brighter();
+			Color b = new Color(p.getColor(), true).brighter();
 			fillCircle(g, pos, 3 * r / 7f, new Color(b.getRed(), b.getGreen(), b.getBlue(), 50));
 		}
 	}
@@ -282,7 +283,7 @@ public class Renderer extends Canvas
 	{
 		Vector2 pos = toRenderSpace(p.getPos());
 		float r = toRenderSpace(p.getRadius());
-		drawOutlinedCircle(g, pos, r, p.getColor());
+		drawOutlinedCircle(g, pos, r, new Color(p.getColor(), true));
 		if (simulation.inDebugMode())
 			stats.put("Pellets Rendered", stats.get("Pellets Rendered") + 1);
 	}
@@ -329,10 +330,10 @@ public class Renderer extends Canvas
 		if (circleNotVisible(ePos, r1) || e.getCellBindings().isEmpty())
 			return;
 
-		Color eColor = e.getColor();
-		int red = eColor.getRed();
-		int green = eColor.getGreen();
-		int blue = eColor.getBlue();
+		int eColor = e.getColor();
+		int red = Colour.red(eColor);
+		int green = Colour.green(eColor);
+		int blue = Colour.blue(eColor);
 
 		for (CellAdhesion.CellBinding binding : e.getCellBindings()) {
 			Cell attached = binding.getDestinationEntity();
@@ -341,11 +342,11 @@ public class Renderer extends Canvas
 			Stroke s = g.getStroke();
 			g.setStroke(new BasicStroke(1.5f * r));
 			Vector2 attachedPos = toRenderSpace(attached.getPos());
-			Color attachedColor = attached.getColor();
+			int attachedColor = attached.getColor();
 			g.setColor(new Color(
-					(red + attachedColor.getRed()) / 2,
-					(green + attachedColor.getGreen()) / 2,
-					(blue + attachedColor.getBlue()) / 2
+					(red + Colour.red(attachedColor)) / 2,
+					(green + Colour.green(attachedColor)) / 2,
+					(blue + Colour.blue(attachedColor)) / 2
 			).brighter());
 			g.drawLine((int) ePos.getX(), (int) ePos.getY(),
 					(int) attachedPos.getX(), (int) attachedPos.getY());
@@ -420,9 +421,9 @@ public class Renderer extends Canvas
 				yPoints[i] = (int) screenPoints[i].getY();
 
 			Color color = new Color(
-					rock.getColor().getRed(),
-					rock.getColor().getGreen(),
-					rock.getColor().getBlue(),
+					Colour.red(rock.getColor()),
+					Colour.green(rock.getColor()),
+					Colour.blue(rock.getColor()),
 					simulation.inDebugMode() ? 100 : 255
 			);
 			g.setColor(color);
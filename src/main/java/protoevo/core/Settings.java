@@ -75,7 +75,24 @@ public final class Settings {
 
     // Performance parameters
     private int physics_substeps;
+    private float neighbour_list_skin;
+    private boolean chunk_colouring_physics;
+    private boolean pairwise_collisions;
+    private boolean fused_tank_phases;
+    private int simulation_threads;
+    private int chunk_batch_size;
+    private boolean profile_ticks;
+    private boolean compiled_networks;
+    private boolean think_stage;
+    private int activation_approximation;
+    private int phenotype_cache_size;
+    private boolean speciation;
+    private float speciation_threshold;
+    private boolean angular_sweep_vision;
+    private int chunk_ray_casting_retina_size;
+    private boolean shared_neighbourhoods;
     private int spatial_hash_resolution;
+    private boolean counting_sort_spatial_hash;
     private int chemical_field_resolution;
     private int chemical_update_interval;
     private float max_interact_range;
@@ -93,6 +110,23 @@ public final class Settings {
     public static final boolean writeGenomes = true;
     public static final boolean finishOnProtozoaExtinction = true;
     public static final int physicsSubSteps = getInstance().physics_substeps;
+    public static final float neighbourListSkin = getInstance().neighbour_list_skin;
+    public static final boolean useChunkColouring = getInstance().chunk_colouring_physics;
+    public static final boolean pairwiseCollisions = getInstance().pairwise_collisions;
+    public static final boolean fuseTankPhases = getInstance().fused_tank_phases;
+    public static final int simulationThreads = getInstance().simulation_threads;
+    public static final int chunkBatchSize = getInstance().chunk_batch_size;
+    public static final boolean profileTicks = getInstance().profile_ticks;
+    public static final boolean compiledNetworks = getInstance().compiled_networks;
+    public static final boolean useThinkStage = getInstance().think_stage;
+    public static final int activationApproximation = getInstance().activation_approximation;
+    public static final int phenotypeCacheSize = getInstance().phenotype_cache_size;
+    public static final boolean useSpeciation = getInstance().speciation;
+    public static final float speciationThreshold = getInstance().speciation_threshold;
+    public static final boolean angularSweepVision = getInstance().angular_sweep_vision;
+    public static final int chunkRayCastingRetinaSize = getInstance().chunk_ray_casting_retina_size;
+    public static final boolean useSharedNeighbourhoods = getInstance().shared_neighbourhoods;
+    public static final boolean useCountingSortSpatialHash = getInstance().counting_sort_spatial_hash;
     public static final int numPossibleCAMs = 64;
     public static final float camProductionEnergyCost = getInstance().cam_energy_cost;
     public static final float startingAvailableCellEnergy = 0.01f;
@@ -34,7 +34,7 @@ public class Simulation
 	private boolean debug = false, delayUpdate = true;
 
 	private final String name;
-	private final String genomeFile, historyFile;
+	private final String genomeFile, historyFile, perfFile, speciesFile;
 	private List<String> statsNames;
 
 	private double updateDurations;
@@ -47,13 +47,15 @@ public class Simulation
 		System.out.println("Created new simulation named: " + name);
 		genomeFile = "saves/" + name + "/genomes.csv";
 		historyFile = "saves/" + name + "/history.csv";
+		perfFile = "saves/" + name + "/perf.csv";
+		speciesFile = "saves/" + name + "/species.csv";
 		settingsPath = "saves/" + name + "/settings.yaml";
 		newSaveDir();
 		newDefaultTank();
 		loadSettings();
 		updateDurations = 0;
 		updatesSincePrint = 0;
-		RANDOM = new Random(Settings.simulationSeed);
+		RANDOM = new SimulationRandom(Settings.simulationSeed);
 	}
 
 	public Simulation(String name)
@@ -62,12 +64,14 @@ public class Simulation
 		this.name = name;
 		genomeFile = "saves/" + name + "/genomes.csv";
 		historyFile = "saves/" + name + "/history.csv";
+		perfFile = "saves/" + name + "/perf.csv";
+		speciesFile = "saves/" + name + "/species.csv";
 		settingsPath = "saves/" + name + "/settings.yaml";
 
 		newSaveDir();
 		loadMostRecentTank();
 		loadSettings();
-		RANDOM = new Random(Settings.simulationSeed);
+		RANDOM = new SimulationRandom(Settings.simulationSeed);
 	}
 
 	public Simulation(String name, String save)
@@ -76,11 +80,13 @@ public class Simulation
 		this.name = name;
 		genomeFile = "saves/" + name + "/genomes.csv";
 		historyFile = "saves/" + name + "/history.csv";
+		perfFile = "saves/" + name + "/perf.csv";
+		speciesFile = "saves/" + name + "/species.csv";
 
 		newSaveDir();
 		loadTank("saves/" + name + "/tank/" + save);
 		loadSettings();
-		RANDOM = new Random(Settings.simulationSeed);
+		RANDOM = new SimulationRandom(Settings.simulationSeed);
 	}
 
 	private void loadSettings() {
@@ -109,6 +115,18 @@ public class Simulation
 			if (!Files.exists(historyPath))
 				Files.createFile(historyPath);
 
+			Path speciesPath = Paths.get(speciesFile);
+			if (Settings.useSpeciation && !Files.exists(speciesPath)) {
+				Files.createFile(speciesPath);
+				FileIO.appendLine(speciesFile, "Time Elapsed,Species,Protozoa");
+			}
+
+			Path perfPath = Paths.get(perfFile);
+			if (Settings.profileTicks && !Files.exists(perfPath)) {
+				Files.createFile(perfPath);
+				FileIO.appendLine(perfFile, TickProfiler.csvHeader());
+			}
+
 			String seedFile = "saves/" + name + "/seed.txt";
 			Path seedPath = Paths.get(seedFile);
 			if (!Files.exists(seedPath)) {
@@ -225,16 +243,22 @@ public class Simulation
 		timeSinceSave += delta;
 		if (timeSinceSave > Settings.timeBetweenSaves) {
 			timeSinceSave = 0;
+			long saveStart = TickProfiler.start();
 			saveTank();
+			TickProfiler.stop(TickProfiler.Phase.SAVE, saveStart);
 		}
 
 		timeSinceSnapshot += delta;
 		if (timeSinceSnapshot > Settings.historySnapshotTime) {
 			timeSinceSnapshot = 0;
+			long snapshotStart = TickProfiler.start();
 			makeHistorySnapshot();
+			TickProfiler.stop(TickProfiler.Phase.SNAPSHOT, snapshotStart);
 		}
 
 		long endTime = System.nanoTime();
+		TickProfiler.stop(TickProfiler.Phase.TICK, startTime);
+		TickProfiler.endTick();
 
 		updateDurations += (endTime - startTime) / 1e6;
 		updatesSincePrint++;
@@ -243,6 +267,8 @@ public class Simulation
 			double duration = updateDurations / updatesSincePrint;
 			System.out.println("Update duration: " + Math.round(duration * 100.0) / 100.0 + " ms. Updates: " + updatesSincePrint);
 
+			TickProfiler.writeWindow(perfFile, tank.getElapsedTime());
+
 			updatesSincePrint = 0;
 			updateDurations = 0;
 		}
@@ -275,6 +301,15 @@ public class Simulation
 				.collect(Collectors.joining(","));
 
 		FileIO.appendLine(historyFile, statsString);
+
+		if (Settings.useSpeciation) {
+			String time = String.format("%.5f", tank.getElapsedTime());
+			String speciesRows = tank.getSpeciesSizes().entrySet().stream()
+					.map(e -> time + "," + e.getKey() + "," + e.getValue())
+					.collect(Collectors.joining("\n"));
+			if (!speciesRows.isEmpty())
+				FileIO.appendLine(speciesFile, speciesRows);
+		}
 	}
 
 	public void toggleDebug() {
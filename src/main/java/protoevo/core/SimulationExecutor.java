@@ -0,0 +1,81 @@
+package protoevo.core;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
+
+/**
+ * Thread pool that all parallel simulation work runs on, kept apart from the common
+ * ForkJoinPool so that it can be sized by {@link Settings#simulationThreads} and is not
+ * shared with the renderer or other JVM work.
+ * <p>
+ * Parallel streams started inside {@link #run(Runnable)} or {@link #forEach(int, IntConsumer)}
+ * also fork onto this pool.
+ */
+public final class SimulationExecutor {
+
+    private static volatile ForkJoinPool pool = createPool(defaultParallelism());
+
+    private SimulationExecutor() {}
+
+    private static int defaultParallelism() {
+        return Settings.simulationThreads > 0 ?
+                Settings.simulationThreads : Runtime.getRuntime().availableProcessors();
+    }
+
+    private static ForkJoinPool createPool(int parallelism) {
+        return new ForkJoinPool(parallelism, p -> {
+            ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(p);
+            thread.setName("simulation-worker-" + thread.getPoolIndex());
+            thread.setDaemon(true);
+            return thread;
+        }, null, false);
+    }
+
+    public static int getParallelism() {
+        return pool.getParallelism();
+    }
+
+    /**
+     * Replaces the pool with one of the given parallelism. Work already running
+     * on the old pool is allowed to finish.
+     */
+    public static synchronized void setParallelism(int parallelism) {
+        if (parallelism < 1)
+            throw new IllegalArgumentException("Parallelism must be at least 1.");
+        ForkJoinPool oldPool = pool;
+        pool = createPool(parallelism);
+        oldPool.shutdown();
+    }
+
+    public static void run(Runnable work) {
+        ForkJoinPool p = pool;
+        if (inPool(p))
+            work.run();
+        else
+            p.submit(work).join();
+    }
+
+    /**
+     * Calls the body with every index in [0, n) in parallel on the simulation pool.
+     */
+    public static void forEach(int n, IntConsumer body) {
+        if (n == 1 || pool.getParallelism() == 1) {
+            for (int i = 0; i < n; i++)
+                body.accept(i);
+            return;
+        }
+        run(() -> IntStream.range(0, n).parallel().forEach(body));
+    }
+
+    public static int getChunkBatchSize() {
+        return Settings.chunkBatchSize > 0 ? Settings.chunkBatchSize : 64;
+    }
+
+    private static boolean inPool(ForkJoinPool p) {
+        Thread thread = Thread.currentThread();
+        return thread instanceof ForkJoinWorkerThread
+                && ((ForkJoinWorkerThread) thread).getPool() == p;
+    }
+}
@@ -0,0 +1,98 @@
+package protoevo.core;
+
+import java.util.Random;
+
+/**
+ * The random number generator behind {@link Simulation#RANDOM}, made deterministic under
+ * parallel updates.
+ * <p>
+ * While a thread works on an entity, between {@link #enter(long, long, int)} and {@link #exit()},
+ * its draws come from a counter-based stream keyed by the seed, the entity, the tick and the
+ * pass over the entities, so they do not depend on which thread runs the entity or on what
+ * other threads draw, and threads do not contend on a shared seed. Draws made outside any
+ * entity, such as while setting up the tank, come from a single sequential stream.
+ * <p>
+ * Numbers are generated by SplitMix64 hashing of the stream key and a counter.
+ */
+public class SimulationRandom extends Random {
+
+    private static final long serialVersionUID = 1L;
+    private static final long GOLDEN_GAMMA = 0x9e3779b97f4a7c15L;
+
+    private static final class Stream {
+        private long key, counter;
+        private boolean active = false;
+    }
+
+    private static final ThreadLocal<Stream> streams = ThreadLocal.withInitial(Stream::new);
+
+    private final long streamSeed;
+    private long sequentialCounter = 0;
+
+    public SimulationRandom(long seed) {
+        super(seed);
+        streamSeed = mix(seed);
+    }
+
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+
+    /**
+     * Directs the draws of the calling thread to the stream of the given entity, tick and pass,
+     * starting from the beginning of that stream. Must be paired with {@link #exit()}.
+     */
+    public static void enter(long entityKey, long tick, int pass) {
+        Stream stream = streams.get();
+        Random random = Simulation.RANDOM;
+        long seed = random instanceof SimulationRandom ? ((SimulationRandom) random).streamSeed : 0;
+        stream.key = mix(seed ^ mix(entityKey + GOLDEN_GAMMA * (tick * 31 + pass)));
+        stream.counter = 0;
+        stream.active = true;
+    }
+
+    public static void exit() {
+        streams.get().active = false;
+    }
+
+    /**
+     * @return whether the calling thread is working on an entity, between
+     * {@link #enter(long, long, int)} and {@link #exit()}.
+     */
+    public static boolean isInEntityStream() {
+        return streams.get().active;
+    }
+
+    private synchronized long nextSequential() {
+        return mix(streamSeed + GOLDEN_GAMMA * ++sequentialCounter);
+    }
+
+    private long nextRaw() {
+        Stream stream = streams.get();
+        if (stream.active)
+            return mix(stream.key + GOLDEN_GAMMA * ++stream.counter);
+        return nextSequential();
+    }
+
+    @Override
+    protected int next(int bits) {
+        return (int) (nextRaw() >>> (64 - bits));
+    }
+
+    /**
+     * Polar method without caching the second value, which would otherwise be shared
+     * between threads and streams.
+     */
+    @Override
+    public double nextGaussian() {
+        double v1, v2, s;
+        do {
+            v1 = 2 * nextDouble() - 1;
+            v2 = 2 * nextDouble() - 1;
+            s = v1 * v1 + v2 * v2;
+        } while (s >= 1 || s == 0);
+        return v1 * Math.sqrt(-2 * Math.log(s) / s);
+    }
+}
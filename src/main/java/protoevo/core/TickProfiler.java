@@ -0,0 +1,156 @@
+package protoevo.core;
+
+import protoevo.utils.FileIO;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Times the phases of each simulation tick when {@link Settings#profileTicks} is enabled.
+ * <p>
+ * Phases are timed with {@link #start()} and {@link #stop(Phase, long)}, which may be called
+ * from any thread. Only whole passes are timed, never the work on a single cell, so the
+ * profiler adds a few clock reads per tick rather than several per cell.
+ * Per-tick durations are collected over a window, summarised with percentiles, and
+ * appended as one row of the perf csv per window.
+ */
+public final class TickProfiler {
+
+    public enum Phase {
+        TICK("Tick"),
+        SPAWN_FLUSH("Spawn Flush"),
+        GENOME_WRITES("Genome Writes"),
+        CELL_UPDATE("Cell Update"),
+        THINK("Think Stage"),
+        RESET("Reset"),
+        PHYSICS("Physics"),
+        DEATH("Death Handling"),
+        CHEMICAL_DEPOSIT("Chemical Deposit"),
+        CHEMICAL_PROPAGATE("Chemical Propagate"),
+        SAVE("Save"),
+        SNAPSHOT("Snapshot");
+
+        private final String name;
+
+        Phase(String name) {
+            this.name = name;
+        }
+
+        public String getName() {
+            return name;
+        }
+    }
+
+    private static final Phase[] phases = Phase.values();
+    private static final double[] percentiles = {50, 95, 99};
+    private static final LongAdder[] currentTick = new LongAdder[phases.length];
+    private static long[][] window = new long[phases.length][256];
+    private static int windowTicks = 0;
+    private static String lastSummary = null;
+
+    static {
+        for (int i = 0; i < phases.length; i++)
+            currentTick[i] = new LongAdder();
+    }
+
+    private TickProfiler() {}
+
+    public static boolean isEnabled() {
+        return Settings.profileTicks;
+    }
+
+    public static long start() {
+        return Settings.profileTicks ? System.nanoTime() : 0;
+    }
+
+    public static void stop(Phase phase, long startTime) {
+        if (Settings.profileTicks)
+            currentTick[phase.ordinal()].add(System.nanoTime() - startTime);
+    }
+
+    /**
+     * Moves the times recorded since the last call into the current window.
+     */
+    public static synchronized void endTick() {
+        if (!Settings.profileTicks)
+            return;
+        if (windowTicks == window[0].length)
+            for (int i = 0; i < phases.length; i++)
+                window[i] = Arrays.copyOf(window[i], 2 * windowTicks);
+        for (int i = 0; i < phases.length; i++)
+            window[i][windowTicks] = currentTick[i].sumThenReset();
+        windowTicks++;
+    }
+
+    public static String csvHeader() {
+        StringBuilder header = new StringBuilder("Time Elapsed,Ticks");
+        for (Phase phase : phases) {
+            header.append(',').append(phase.name).append(" Mean");
+            for (double p : percentiles)
+                header.append(',').append(phase.name).append(" P").append((int) p);
+            header.append(',').append(phase.name).append(" Max");
+        }
+        return header.toString();
+    }
+
+    /**
+     * Appends the statistics of the current window to the csv file, in milliseconds,
+     * and starts a new window.
+     */
+    public static synchronized void writeWindow(String perfFile, float timeElapsed) {
+        if (!Settings.profileTicks || windowTicks == 0)
+            return;
+
+        StringBuilder row = new StringBuilder();
+        row.append(String.format("%.5f", timeElapsed)).append(',').append(windowTicks);
+        for (int i = 0; i < phases.length; i++)
+            for (double stat : phaseStats(i))
+                row.append(',').append(String.format("%.4f", stat));
+        FileIO.appendLine(perfFile, row.toString());
+
+        lastSummary = summary();
+        windowTicks = 0;
+    }
+
+    private static double[] phaseStats(int phase) {
+        long[] samples = Arrays.copyOf(window[phase], windowTicks);
+        Arrays.sort(samples);
+        double[] stats = new double[percentiles.length + 2];
+        double total = 0;
+        for (long sample : samples)
+            total += sample;
+        stats[0] = total / samples.length / 1e6;
+        for (int k = 0; k < percentiles.length; k++) {
+            int idx = (int) Math.ceil(percentiles[k] / 100.0 * samples.length) - 1;
+            stats[k + 1] = samples[Math.max(0, idx)] / 1e6;
+        }
+        stats[stats.length - 1] = samples[samples.length - 1] / 1e6;
+        return stats;
+    }
+
+    private static String summary() {
+        StringBuilder summary = new StringBuilder();
+        summary.append(String.format("%-20s %9s %9s %9s %9s %9s%n",
+                "Phase (ms, " + windowTicks + " ticks)", "mean", "p50", "p95", "p99", "max"));
+        for (int i = 0; i < phases.length; i++) {
+            double[] stats = phaseStats(i);
+            summary.append(String.format("%-20s %9.3f %9.3f %9.3f %9.3f %9.3f%n",
+                    phases[i].name, stats[0], stats[1], stats[2], stats[3], stats[4]));
+        }
+        return summary.toString().trim();
+    }
+
+    /**
+     * @return a table of the most recently completed window, or of the
+     * current window if none has completed yet.
+     */
+    public static synchronized String getSummary() {
+        if (!Settings.profileTicks)
+            return "Tick profiling is disabled, set profile_ticks in the settings to enable it.";
+        if (lastSummary != null)
+            return lastSummary;
+        if (windowTicks == 0)
+            return "No ticks profiled yet.";
+        return summary();
+    }
+}
@@ -3,6 +3,8 @@ package protoevo.env;
 import protoevo.biology.Cell;
 import protoevo.biology.PlantCell;
 import protoevo.core.Settings;
+import protoevo.core.SimulationExecutor;
+import protoevo.core.TickProfiler;
 import protoevo.utils.Vector2;
 
 import java.io.Serializable;
@@ -91,13 +93,19 @@ public class ChemicalSolution implements Serializable {
     public void update(float delta, Collection<Cell> entities) {
         timeSinceUpdate += delta;
         if (timeSinceUpdate >= Settings.chemicalsUpdateTime) {
-            entities.parallelStream().forEach(e -> depositChemicals(timeSinceUpdate, e));
-            Arrays.stream(chemicalGrid).parallel().forEach(
-                    row -> Arrays.stream(row).forEach(chemical -> chemical.propagate(timeSinceUpdate))
-            );
-            Arrays.stream(chemicalGrid).parallel().forEach(
-                    row -> Arrays.stream(row).forEach(Chemical::update)
-            );
+            SimulationExecutor.run(() -> {
+                long depositStart = TickProfiler.start();
+                entities.parallelStream().forEach(e -> depositChemicals(timeSinceUpdate, e));
+                TickProfiler.stop(TickProfiler.Phase.CHEMICAL_DEPOSIT, depositStart);
+                long propagateStart = TickProfiler.start();
+                Arrays.stream(chemicalGrid).parallel().forEach(
+                        row -> Arrays.stream(row).forEach(chemical -> chemical.propagate(timeSinceUpdate))
+                );
+                Arrays.stream(chemicalGrid).parallel().forEach(
+                        row -> Arrays.stream(row).forEach(Chemical::update)
+                );
+                TickProfiler.stop(TickProfiler.Phase.CHEMICAL_PROPAGATE, propagateStart);
+            });
             timeSinceUpdate = 0;
         }
     }
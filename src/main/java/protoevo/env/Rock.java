@@ -3,14 +3,15 @@ package protoevo.env;
 import protoevo.biology.Cell;
 import protoevo.core.Collidable;
 import protoevo.core.Simulation;
+import protoevo.utils.Colour;
 import protoevo.utils.Vector2;
 
-import java.awt.*;
 import java.io.Serializable;
 import java.util.ArrayList;
 
 public class Rock extends Collidable implements Serializable {
-    public static final long serialVersionUID = 1L;
+    // 2 since the colour is a packed int rather than a java.awt.Color
+    public static final long serialVersionUID = 2L;
 
     private final Vector2[] points;
     private final Vector2[][] edges;
@@ -18,7 +19,7 @@ public class Rock extends Collidable implements Serializable {
     private final Vector2 centre;
     private final Vector2[] normals;
     private final Vector2[] boundingBox;
-    private final Color colour;
+    private final int colour;
 
     public Rock(Vector2 p1, Vector2 p2, Vector2 p3) {
         points = new Vector2[]{p1, p2, p3};
@@ -100,15 +101,19 @@ public class Rock extends Collidable implements Serializable {
         return normals;
     }
 
-    private float sign(Vector2 p1, Vector2 p2, Vector2 p3) {
-        return (p1.getX() - p3.getX()) * (p2.getY() - p3.getY())
-                - (p2.getX() - p3.getX()) * (p1.getY() - p3.getY());
+    private float sign(float x, float y, Vector2 p2, Vector2 p3) {
+        return (x - p3.getX()) * (p2.getY() - p3.getY())
+                - (p2.getX() - p3.getX()) * (y - p3.getY());
     }
 
     public boolean pointInside(Vector2 x) {
-        float d1 = sign(x, points[0], points[1]);
-        float d2 = sign(x, points[1], points[2]);
-        float d3 = sign(x, points[2], points[0]);
+        return pointInside(x.getX(), x.getY());
+    }
+
+    public boolean pointInside(float x, float y) {
+        float d1 = sign(x, y, points[0], points[1]);
+        float d2 = sign(x, y, points[1], points[2]);
+        float d3 = sign(x, y, points[2], points[0]);
 
         boolean hasNeg = (d1 < 0) || (d2 < 0) || (d3 < 0);
         boolean hasPos = (d1 > 0) || (d2 > 0) || (d3 > 0);
@@ -140,6 +145,41 @@ public class Rock extends Collidable implements Serializable {
         return collisions.toArray(new Vector2[0]);
     }
 
+    @Override
+    public float rayCollisionSqLen(float startX, float startY, float endX, float endY) {
+        float dirRayX = endX - startX;
+        float dirRayY = endY - startY;
+        float rayLen2 = dirRayX*dirRayX + dirRayY*dirRayY;
+        float startDotRay = startX*dirRayX + startY*dirRayY;
+        float sqLen = Float.MAX_VALUE;
+        for (int i = 0; i < edges.length; i++) {
+            if (isEdgeAttached(i))
+                continue;
+
+            Vector2 e0 = edges[i][0], e1 = edges[i][1];
+            float dirEdgeX = e1.getX() - e0.getX();
+            float dirEdgeY = e1.getY() - e0.getY();
+
+            float a00 = rayLen2, a01 = -(dirRayX*dirEdgeX + dirRayY*dirEdgeY);
+            float a10 = -(dirEdgeX*dirRayX + dirEdgeY*dirRayY), a11 = dirEdgeX*dirEdgeX + dirEdgeY*dirEdgeY;
+            float c0 = e0.dot(dirRayX, dirRayY) - startDotRay;
+            float c1 = (startX*dirEdgeX + startY*dirEdgeY) - e0.dot(dirEdgeX, dirEdgeY);
+
+            float det = a00 * a11 - a10 * a01;
+            if (det == 0)
+                continue;
+
+            float t1 = (c0*a11 - c1*a01) / det;
+            float t2 = (-c0*a10 + c1*a00) / det;
+            if (0f < t1 && t1 < 1f && 0f < t2 && t2 < 1f) {
+                float dx = (startX + dirRayX*t1) - startX;
+                float dy = (startY + dirRayY*t1) - startY;
+                sqLen = Math.min(sqLen, dx*dx + dy*dy);
+            }
+        }
+        return sqLen;
+    }
+
     public boolean intersectsWith(Rock otherRock) {
         for (Vector2[] e1 : otherRock.getEdges())
             for (Vector2[] e2 : getEdges())
@@ -189,14 +229,14 @@ public class Rock extends Collidable implements Serializable {
         return edgesIntersect(e1[0], dir1, e2[0], dir2);
     }
 
-    public Color getColor() {
+    public int getColor() {
         return colour;
     }
 
-    public static Color randomRockColour() {
+    public static int randomRockColour() {
         int tone = 80 + Simulation.RANDOM.nextInt(20);
         int yellowing = Simulation.RANDOM.nextInt(20);
-        return new Color(tone + yellowing, tone + yellowing, tone);
+        return Colour.rgb(tone + yellowing, tone + yellowing, tone);
     }
 
     public boolean allEdgesAttached() {
@@ -3,14 +3,23 @@ package protoevo.env;
 import java.io.Serializable;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
 import java.util.function.Function;
 import java.util.stream.Collectors;
 
 import protoevo.biology.*;
 import protoevo.biology.genes.Gene;
+import protoevo.biology.genes.NetworkGene;
 import protoevo.core.ChunkManager;
 import protoevo.core.Settings;
 import protoevo.core.Simulation;
+import protoevo.core.SimulationExecutor;
+import protoevo.core.SimulationRandom;
+import protoevo.core.TickProfiler;
+import protoevo.core.TickProfiler.Phase;
+import protoevo.neat.NetworkGenome;
+import protoevo.neat.NeuralNetwork;
+import protoevo.neat.SpeciesIndex;
 import protoevo.utils.FileIO;
 import protoevo.utils.Vector2;
 
@@ -33,6 +42,9 @@ public class Tank implements Iterable<Cell>, Serializable
 
 	private final List<Cell> entitiesToAdd = new ArrayList<>();
 	private boolean hasInitialised;
+	private SpeciesIndex speciesIndex;
+	private long tick = 0;
+	private static final int UPDATE_PASS = 0, ACT_PASS = 1, DEATH_PASS = 2;
 
 	public Tank() 
 	{
@@ -167,13 +179,51 @@ public class Tank implements Iterable<Cell>, Serializable
 	}
 
 	public void updateCell(Cell e, float delta) {
-		e.handleInteractions(delta);
-		e.update(delta);
-		handleTankEdge(e);
+		SimulationRandom.enter(e.getRandomKey(), tick, UPDATE_PASS);
+		try {
+			e.handleInteractions(delta);
+			e.update(delta);
+			if (!Settings.useThinkStage)
+				handleTankEdge(e);
+		} finally {
+			SimulationRandom.exit();
+		}
+	}
+
+	/**
+	 * Evaluates the brains of all protozoa together, between the update of the cells,
+	 * which gathers the brains' inputs, and {@link #finishCellUpdate(Cell, float)}, which
+	 * acts on their outputs.
+	 */
+	private void think() {
+		long thinkStart = TickProfiler.start();
+		List<NeuralNetwork> networks = new ArrayList<>();
+		for (Cell cell : chunkManager.getAllCells())
+			if (cell instanceof Protozoan && ((Protozoan) cell).getBrain() instanceof NNBrain)
+				networks.add(((NNBrain) ((Protozoan) cell).getBrain()).network);
+		NeuralNetwork.tickAll(networks);
+		TickProfiler.stop(Phase.THINK, thinkStart);
+	}
+
+	private void finishCellUpdate(Cell e, float delta) {
+		SimulationRandom.enter(e.getRandomKey(), tick, ACT_PASS);
+		try {
+			if (e instanceof Protozoan)
+				((Protozoan) e).actOnThoughts(delta);
+			handleTankEdge(e);
+		} finally {
+			SimulationRandom.exit();
+		}
 	}
 
 	private void flushEntitiesToAdd() {
-		entitiesToAdd.forEach(chunkManager::add);
+		// cells are born in parallel, so are ordered by key to add them in the same order every run
+		entitiesToAdd.sort(Comparator.comparingLong(Cell::getRandomKey));
+		for (Cell e : entitiesToAdd) {
+			if (e instanceof Protozoan)
+				handleNewProtozoa((Protozoan) e);
+			chunkManager.add(e);
+		}
 		entitiesToAdd.clear();
 		chunkManager.update();
 	}
@@ -188,17 +238,27 @@ public class Tank implements Iterable<Cell>, Serializable
 	}
 
 	public void update(float delta) 
+	{
+		update(delta, Settings.fuseTankPhases);
+	}
+
+	void update(float delta, boolean fusePhases)
 	{
 		elapsedTime += delta;
+		tick++;
+		long flushStart = TickProfiler.start();
 		flushEntitiesToAdd();
+		TickProfiler.stop(Phase.SPAWN_FLUSH, flushStart);
+		long writesStart = TickProfiler.start();
 		flushWrites();
+		TickProfiler.stop(Phase.GENOME_WRITES, writesStart);
 
 		Collection<Cell> cells = chunkManager.getAllCells();
 
-		cells.parallelStream().forEach(Cell::resetPhysics);
-		cells.parallelStream().forEach(cell -> updateCell(cell, delta));
-		cells.parallelStream().forEach(cell -> cell.physicsUpdate(delta));
-		cells.parallelStream().forEach(this::handleDeadEntities);
+		if (fusePhases)
+			fusedUpdate(delta);
+		else
+			phasedUpdate(delta, cells);
 
 		updateCounts(cells);
 		if (chemicalSolution != null)
@@ -206,6 +266,107 @@ public class Tank implements Iterable<Cell>, Serializable
 
 	}
 
+	/**
+	 * Runs the per-cell work of a tick over chunk-local batches with a barrier only where
+	 * a phase reads or writes what others write: every cell must be reset before any is
+	 * updated, since updating a cell can write to its neighbours, every cell must finish
+	 * interacting and updating before any physics substep runs, and every substep must
+	 * finish before the dead are handled.
+	 */
+	private void fusedUpdate(float delta) {
+		int[] batches = chunkManager.getChunkBatches(SimulationExecutor.getChunkBatchSize());
+
+		long updateStart = TickProfiler.start();
+		long resetStart = TickProfiler.start();
+		forEachCellInBatches(batches, Cell::resetPhysics);
+		TickProfiler.stop(Phase.RESET, resetStart);
+		forEachCellInBatches(batches, cell -> updateCell(cell, delta));
+		TickProfiler.stop(Phase.CELL_UPDATE, updateStart);
+
+		if (Settings.useThinkStage) {
+			think();
+			long actStart = TickProfiler.start();
+			forEachCellInBatches(batches, cell -> finishCellUpdate(cell, delta));
+			TickProfiler.stop(Phase.CELL_UPDATE, actStart);
+		}
+
+		long physicsStart = TickProfiler.start();
+		if (Settings.useChunkColouring)
+			colouredPhysicsUpdate(delta);
+		else
+			forEachCellInBatches(batches, cell -> cell.physicsUpdate(delta));
+		// without colouring no barrier separates the substeps, so only a particle's own
+		// displacement rebuilds its list within the tick
+		chunkManager.advanceNeighbourListGeneration();
+		TickProfiler.stop(Phase.PHYSICS, physicsStart);
+
+		long deathStart = TickProfiler.start();
+		forEachCellInBatches(batches, this::handleDeadEntities);
+		TickProfiler.stop(Phase.DEATH, deathStart);
+	}
+
+	private void forEachCellInBatches(int[] batches, Consumer<Cell> action) {
+		SimulationExecutor.forEach(batches.length - 1, b -> {
+			for (int chunkID = batches[b]; chunkID < batches[b + 1]; chunkID++)
+				chunkManager.forEachCellInChunk(chunkID, action);
+		});
+	}
+
+	private void phasedUpdate(float delta, Collection<Cell> cells) {
+		SimulationExecutor.run(() -> phasedUpdateParallel(delta, cells));
+	}
+
+	private void phasedUpdateParallel(float delta, Collection<Cell> cells) {
+		long updateStart = TickProfiler.start();
+		long resetStart = TickProfiler.start();
+		cells.parallelStream().forEach(Cell::resetPhysics);
+		TickProfiler.stop(Phase.RESET, resetStart);
+		cells.parallelStream().forEach(cell -> updateCell(cell, delta));
+		TickProfiler.stop(Phase.CELL_UPDATE, updateStart);
+
+		if (Settings.useThinkStage) {
+			think();
+			long actStart = TickProfiler.start();
+			cells.parallelStream().forEach(cell -> finishCellUpdate(cell, delta));
+			TickProfiler.stop(Phase.CELL_UPDATE, actStart);
+		}
+
+		long physicsStart = TickProfiler.start();
+		if (Settings.useChunkColouring)
+			colouredPhysicsUpdate(delta);
+		else
+			cells.parallelStream().forEach(cell -> cell.physicsUpdate(delta));
+		chunkManager.advanceNeighbourListGeneration();
+		TickProfiler.stop(Phase.PHYSICS, physicsStart);
+
+		long deathStart = TickProfiler.start();
+		cells.parallelStream().forEach(this::handleDeadEntities);
+		TickProfiler.stop(Phase.DEATH, deathStart);
+	}
+
+	/**
+	 * Runs the physics substeps one chunk colour class at a time, so that cells resolving
+	 * collisions and binding constraints in parallel never share a neighbour.
+	 * The tiles must cover everything a cell can read or write in a substep: bindings
+	 * stretched up to their detach distance, the broad-phase query around it, and the
+	 * drift since the chunks were built.
+	 */
+	private void colouredPhysicsUpdate(float delta) {
+		float reach = 2 * 1.3f * Settings.maxParticleRadius
+				+ Settings.neighbourListSkin
+				+ chunkManager.getChunkSize();
+		int[][][] colouring = chunkManager.getChunkColouring(reach);
+		float subStepDelta = delta / Settings.physicsSubSteps;
+		for (int i = 0; i < Settings.physicsSubSteps; i++) {
+			for (int[][] tiles : colouring)
+				SimulationExecutor.forEach(tiles.length, t -> {
+					for (int chunkID : tiles[t])
+						chunkManager.forEachCellInChunk(chunkID, cell -> cell.physicsStep(subStepDelta));
+				});
+			chunkManager.advanceNeighbourListGeneration();
+		}
+	}
+
 	private void updateCounts(Collection<Cell> entities) {
 		cellCounts.clear();
 		for (Cell e : entities)
@@ -215,13 +376,27 @@ public class Tank implements Iterable<Cell>, Serializable
 	private void handleDeadEntities(Cell e) {
 		if (!e.isDead())
 			return;
-		e.handleDeath();
+		SimulationRandom.enter(e.getRandomKey(), tick, DEATH_PASS);
+		try {
+			e.handleDeath();
+		} finally {
+			SimulationRandom.exit();
+		}
 	}
 
 	private void handleNewProtozoa(Protozoan p) {
+		NetworkGenome networkGenome = p.getGenome().getGeneValue(NetworkGene.class);
+		if (networkGenome != null)
+			networkGenome.assignInnovations();
+
 		protozoaBorn++;
 		generation = Math.max(generation, p.getGeneration());
 
+		if (Settings.useSpeciation) {
+			if (networkGenome != null)
+				p.setSpecies(getSpeciesIndex().assign(networkGenome));
+		}
+
 		if (genomeFile != null && Settings.writeGenomes) {
 			String genomeLine = p.getGeneration() + "," + elapsedTime + "," + p.getGenome().toString();
 			genomesToWrite.add(genomeLine);
@@ -233,11 +408,11 @@ public class Tank implements Iterable<Cell>, Serializable
 				>= cellCapacities.getOrDefault(e.getClass(), 0))
 			return;
 
-		totalCellsAdded++;
-		entitiesToAdd.add(e);
-
-		if (e instanceof Protozoan)
-			handleNewProtozoa((Protozoan) e);
+		// cells are born from parallel phases of the update
+		synchronized (entitiesToAdd) {
+			totalCellsAdded++;
+			entitiesToAdd.add(e);
+		}
 	}
 
 	public Collection<Cell> getEntities() {
@@ -254,6 +429,13 @@ public class Tank implements Iterable<Cell>, Serializable
 		stats.put("Protozoa Born", (float) protozoaBorn);
 		stats.put("Total Entities Born", (float) totalCellsAdded);
 		stats.put("Crossover Events", (float) crossoverEvents);
+		if (Settings.useSpeciation) {
+			Map<Integer, Integer> speciesSizes = getSpeciesSizes();
+			stats.put("Species", (float) speciesSizes.size());
+			stats.put("Species Created", (float) getSpeciesIndex().numberOfSpeciesCreated());
+			stats.put("Largest Species", (float) speciesSizes.values().stream()
+					.max(Integer::compare).orElse(0));
+		}
 		if (includeProtozoaStats)
 			stats.putAll(getProtozoaStats());
 		return stats;
@@ -293,6 +475,31 @@ public class Tank implements Iterable<Cell>, Serializable
 		return stats;
 	}
 	
+	private SpeciesIndex getSpeciesIndex() {
+		if (speciesIndex == null)
+			speciesIndex = new SpeciesIndex(Settings.speciationThreshold);
+		return speciesIndex;
+	}
+
+	/**
+	 * Counts the living protozoa of each species, including those waiting to be added,
+	 * and drops extinct species from the speciation index.
+	 * @return the number of members of each living species, by species id.
+	 */
+	public Map<Integer, Integer> getSpeciesSizes() {
+		Map<Integer, Integer> sizes = new TreeMap<>();
+		Consumer<Cell> count = cell -> {
+			if (cell instanceof Protozoan && ((Protozoan) cell).getSpecies() > 0)
+				sizes.merge(((Protozoan) cell).getSpecies(), 1, Integer::sum);
+		};
+		synchronized (entitiesToAdd) {
+			chunkManager.getAllCells().forEach(count);
+			entitiesToAdd.forEach(count);
+			getSpeciesIndex().retainSpecies(sizes.keySet());
+		}
+		return sizes;
+	}
+
 	public int numberOfProtozoa() {
 		return cellCounts.getOrDefault(Protozoan.class, 0);
 	}
@@ -0,0 +1,75 @@
+package protoevo.neat;
+
+import protoevo.core.Settings;
+
+/**
+ * The tanh and sigmoid used by {@link Neuron.Activation#TANH} and {@link Neuron.Activation#SIGMOID},
+ * with optional approximations selected by {@link Settings#activationApproximation}:
+ * <ul>
+ *     <li>{@link #EXACT}: {@code Math.tanh} and {@code Math.exp}.</li>
+ *     <li>{@link #RATIONAL}: a [7/6] continued fraction of tanh, saturating at |z| = 5.
+ *     Max absolute error below 1e-4 for tanh and 5e-5 for sigmoid.</li>
+ *     <li>{@link #LOOKUP_TABLE}: linear interpolation in a table of tanh over [-8, 8].
+ *     Max absolute error below 1e-5 for tanh and 5e-6 for sigmoid.</li>
+ * </ul>
+ * The sigmoid approximations are computed as {@code 0.5 + 0.5 * tanh(z / 2)}.
+ */
+public final class Activations {
+
+    public static final int EXACT = 0, RATIONAL = 1, LOOKUP_TABLE = 2;
+
+    private static final int mode = Settings.activationApproximation;
+
+    private static final float rationalLimit = 5f;
+    private static final float tableLimit = 8f;
+    private static final int tableSize = 2048;
+    private static final float tableScale = tableSize / (2 * tableLimit);
+    private static final float[] tanhTable = new float[tableSize + 1];
+
+    static {
+        for (int i = 0; i <= tableSize; i++)
+            tanhTable[i] = (float) Math.tanh(-tableLimit + i / tableScale);
+    }
+
+    private Activations() {}
+
+    public static float tanh(float z) {
+        switch (mode) {
+            case RATIONAL: return rationalTanh(z);
+            case LOOKUP_TABLE: return tableTanh(z);
+            default: return (float) Math.tanh(z);
+        }
+    }
+
+    public static float sigmoid(float z) {
+        switch (mode) {
+            case RATIONAL: return 0.5f + 0.5f * rationalTanh(0.5f * z);
+            case LOOKUP_TABLE: return 0.5f + 0.5f * tableTanh(0.5f * z);
+            default: return 1 / (1 + (float) Math.exp(-z));
+        }
+    }
+
+    public static float rationalTanh(float z) {
+        if (z >= rationalLimit)
+            return 1f;
+        if (z <= -rationalLimit)
+            return -1f;
+        float z2 = z * z;
+        float t = z * (135135f + z2 * (17325f + z2 * (378f + z2)))
+                / (135135f + z2 * (62370f + z2 * (3150f + 28f * z2)));
+        return Math.max(-1f, Math.min(1f, t));
+    }
+
+    public static float tableTanh(float z) {
+        if (z >= tableLimit)
+            return 1f;
+        if (z <= -tableLimit)
+            return -1f;
+        if (Float.isNaN(z))
+            return z;
+        float u = (z + tableLimit) * tableScale;
+        int i = Math.min((int) u, tableSize - 1);
+        float f = u - i;
+        return tanhTable[i] + (tanhTable[i + 1] - tanhTable[i]) * f;
+    }
+}
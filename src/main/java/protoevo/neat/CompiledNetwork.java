@@ -0,0 +1,247 @@
+package protoevo.neat;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Immutable, flat-array form of a network's structure, evaluated by {@link NeuralNetwork}.
+ * <p>
+ * Neurons are reordered by depth so that sources mostly precede the neurons reading them.
+ * The inputs of each neuron are stored in compressed sparse row form: the inputs of the neuron
+ * at index i are {@code sources[k]} with weights {@code weights[k]} for
+ * {@code inputStart[i] <= k < inputStart[i + 1]}, in the same order as the synapses of the genome,
+ * so that the weighted sums are accumulated exactly as {@link Neuron#tick()} does.
+ */
+public class CompiledNetwork implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    static final byte LINEAR = 0, SIGMOID = 1, TANH = 2, CUSTOM = 3;
+
+    final int size;
+    final int[] neuronIds;
+    final int[] ids;
+    final Neuron.Type[] types;
+    final String[] labels;
+    final byte[] activations;
+    final Neuron.Activation[] customActivations;
+    final int[] inputStart, sources;
+    final float[] weights;
+    final int[] neuronDepths;
+    final int[] sensorIndices, outputIndices;
+    final int depth;
+
+    /**
+     * All arrays are indexed by the position of the neuron in {@code neuronIds}, which holds
+     * the ids of the neurons that {@link NetworkGenome#phenotype()} expresses, in increasing order.
+     */
+    CompiledNetwork(int[] neuronIds, Neuron.Type[] idTypes, Neuron.Activation[] idActivations, String[] idLabels,
+                    int[] idInputStart, int[] idSources, float[] idWeights) {
+        this.neuronIds = neuronIds;
+        size = idTypes.length;
+
+        int[] idDepths = new int[size];
+        depth = calculateDepths(idTypes, idInputStart, idSources, idDepths);
+
+        ids = new int[size];
+        for (int i = 0; i < size; i++)
+            ids[i] = i;
+        sortIdsByDepth(idDepths);
+
+        int[] indexOf = new int[size];
+        for (int i = 0; i < size; i++)
+            indexOf[ids[i]] = i;
+
+        types = new Neuron.Type[size];
+        labels = new String[size];
+        activations = new byte[size];
+        customActivations = new Neuron.Activation[size];
+        neuronDepths = new int[size];
+        inputStart = new int[size + 1];
+        sources = new int[idSources.length];
+        weights = new float[idWeights.length];
+
+        int k = 0;
+        for (int i = 0; i < size; i++) {
+            int id = ids[i];
+            types[i] = idTypes[id];
+            labels[i] = idLabels[id];
+            neuronDepths[i] = idDepths[id];
+            activations[i] = activationCode(idActivations[id]);
+            if (activations[i] == CUSTOM)
+                customActivations[i] = idActivations[id];
+            inputStart[i] = k;
+            for (int j = idInputStart[id]; j < idInputStart[id + 1]; j++) {
+                sources[k] = indexOf[idSources[j]];
+                weights[k] = idWeights[j];
+                k++;
+            }
+        }
+        inputStart[size] = k;
+
+        sensorIndices = indicesOfType(Neuron.Type.SENSOR, indexOf);
+        outputIndices = indicesOfType(Neuron.Type.OUTPUT, indexOf);
+    }
+
+    private void sortIdsByDepth(int[] idDepths) {
+        Integer[] order = new Integer[size];
+        for (int i = 0; i < size; i++)
+            order[i] = i;
+        Arrays.sort(order, (a, b) -> idDepths[a] != idDepths[b] ?
+                Integer.compare(idDepths[a], idDepths[b]) : Integer.compare(a, b));
+        for (int i = 0; i < size; i++)
+            ids[i] = order[i];
+    }
+
+    private int[] indicesOfType(Neuron.Type type, int[] indexOf) {
+        // in neuron id order, matching the input and output order of NeuralNetwork
+        int n = 0;
+        for (Neuron.Type t : types)
+            if (t.equals(type))
+                n++;
+        int[] indices = new int[n];
+        int i = 0;
+        for (int id = 0; id < size; id++)
+            if (types[indexOf[id]].equals(type))
+                indices[i++] = indexOf[id];
+        return indices;
+    }
+
+    private static byte activationCode(Neuron.Activation activation) {
+        if (activation == Neuron.Activation.LINEAR)
+            return LINEAR;
+        if (activation == Neuron.Activation.SIGMOID)
+            return SIGMOID;
+        if (activation == Neuron.Activation.TANH)
+            return TANH;
+        return CUSTOM;
+    }
+
+    /**
+     * Mirrors {@link NeuralNetwork#calculateDepth()} on the arrays in neuron id order,
+     * including the order in which neurons are visited.
+     */
+    private static int calculateDepths(Neuron.Type[] types, int[] inputStart, int[] sources, int[] depths) {
+        int n = types.length;
+        Arrays.fill(depths, -1);
+        boolean[] visited = new boolean[n];
+
+        List<Integer> outputs = new ArrayList<>();
+        for (int id = 0; id < n; id++)
+            if (types[id].equals(Neuron.Type.OUTPUT))
+                outputs.add(id);
+
+        int depth = calculateDepths(outputs, visited, inputStart, sources, depths);
+
+        for (int id = 0; id < n; id++) {
+            if (types[id].equals(Neuron.Type.OUTPUT))
+                depths[id] = depth;
+            else if (types[id].equals(Neuron.Type.SENSOR))
+                depths[id] = 0;
+        }
+        for (int id = 0; id < n; id++)
+            if (depths[id] == -1)
+                depths[id] = depth;
+
+        return depth;
+    }
+
+    private static int calculateDepths(List<Integer> explore, boolean[] visited,
+                                       int[] inputStart, int[] sources, int[] depths) {
+        List<Integer> unexplored = new ArrayList<>();
+        for (int id : explore)
+            if (!visited[id])
+                unexplored.add(id);
+
+        for (int id : explore)
+            visited[id] = true;
+
+        int maxDepth = 0;
+        for (int id : unexplored) {
+            List<Integer> inputs = new ArrayList<>();
+            for (int k = inputStart[id]; k < inputStart[id + 1]; k++)
+                inputs.add(sources[k]);
+            int neuronDepth = 1 + calculateDepths(inputs, visited, inputStart, sources, depths);
+            depths[id] = neuronDepth;
+            maxDepth = Math.max(maxDepth, neuronDepth);
+        }
+        return maxDepth;
+    }
+
+    /**
+     * Computes the next state of every neuron from the current states,
+     * equivalent to calling {@link Neuron#tick()} on each neuron.
+     */
+    void tick(float[] state, float[] nextState) {
+        for (int i = 0; i < size; i++) {
+            float z = 0.0f;
+            for (int k = inputStart[i]; k < inputStart[i + 1]; k++)
+                z += state[sources[k]] * weights[k];
+
+            switch (activations[i]) {
+                case LINEAR:
+                    nextState[i] = z;
+                    break;
+                case SIGMOID:
+                    nextState[i] = Activations.sigmoid(z);
+                    break;
+                case TANH:
+                    nextState[i] = Activations.tanh(z);
+                    break;
+                default:
+                    nextState[i] = customActivations[i].apply(z);
+            }
+        }
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    public int getDepth() {
+        return depth;
+    }
+
+    public int getInputSize() {
+        return sensorIndices.length;
+    }
+
+    public int getOutputSize() {
+        return outputIndices.length;
+    }
+
+    /**
+     * Builds a {@link Neuron} for every neuron in the network, in neuron id order, with the
+     * given inputs and depths, for code that inspects the network structure.
+     */
+    Neuron[] createNeurons() {
+        Neuron[] neurons = new Neuron[size];
+        for (int i = 0; i < size; i++) {
+            int nInputs = inputStart[i + 1] - inputStart[i];
+            neurons[ids[i]] = new Neuron(
+                    neuronIds[ids[i]], new Neuron[nInputs], new float[nInputs],
+                    types[i], activationOf(i), labels[i]
+            );
+            neurons[ids[i]].setDepth(neuronDepths[i]);
+        }
+        for (int i = 0; i < size; i++) {
+            Neuron neuron = neurons[ids[i]];
+            for (int k = inputStart[i]; k < inputStart[i + 1]; k++) {
+                neuron.getInputs()[k - inputStart[i]] = neurons[ids[sources[k]]];
+                neuron.getWeights()[k - inputStart[i]] = weights[k];
+            }
+        }
+        return neurons;
+    }
+
+    private Neuron.Activation activationOf(int i) {
+        switch (activations[i]) {
+            case LINEAR: return Neuron.Activation.LINEAR;
+            case SIGMOID: return Neuron.Activation.SIGMOID;
+            case TANH: return Neuron.Activation.TANH;
+            default: return customActivations[i];
+        }
+    }
+}
@@ -6,9 +6,6 @@ import protoevo.core.Simulation;
 
 import java.io.Serializable;
 import java.util.*;
-import java.util.function.Function;
-import java.util.stream.Collectors;
-import java.util.stream.Stream;
 
 public class NetworkGenome implements Serializable
 {
@@ -16,11 +13,13 @@ public class NetworkGenome implements Serializable
 	private NeuronGene[] sensorNeuronGenes, outputNeuronGenes, hiddenNeuronGenes;
 	private int nNeuronGenes;
 	private SynapseGene[] synapseGenes;
-	private Random random = Simulation.RANDOM;
 	private float mutationChance = Settings.globalMutationChance;
 	private Neuron.Activation defaultActivation = Neuron.Activation.LINEAR;
 	private float fitness = 0.0f;
 	private int numMutations = 0, nSensors, nOutputs;
+	private transient Map<Long, Integer> synapseIndex;
+
+	private static final float excessCoefficient = 1f, disjointCoefficient = 1f, weightCoefficient = 0.4f;
 
 	public NetworkGenome(NetworkGenome other) {
 		setProperties(other);
@@ -33,7 +32,6 @@ public class NetworkGenome implements Serializable
 		hiddenNeuronGenes = other.hiddenNeuronGenes;
 		synapseGenes = other.synapseGenes;
 		nNeuronGenes = other.nNeuronGenes;
-		random = other.random;
 		mutationChance = other.mutationChance;
 		defaultActivation = other.defaultActivation;
 		fitness = other.fitness;
@@ -103,10 +101,10 @@ public class NetworkGenome implements Serializable
 		sensorNeuronGenes[sensorNeuronGenes.length - 1] = n;
 		nSensors++;
 
-		int originalLen = synapseGenes.length;
-		synapseGenes = Arrays.copyOf(synapseGenes, originalLen + outputNeuronGenes.length);
+		SynapseGene[] newGenes = new SynapseGene[outputNeuronGenes.length];
 		for (int i = 0; i < outputNeuronGenes.length; i++)
-			synapseGenes[originalLen + i] = new SynapseGene(n, outputNeuronGenes[i]);
+			newGenes[i] = new SynapseGene(n, outputNeuronGenes[i]);
+		addSynapseGenes(newGenes);
 	}
 
 	public void addOutput(String label) {
@@ -118,13 +116,78 @@ public class NetworkGenome implements Serializable
 		outputNeuronGenes[outputNeuronGenes.length - 1] = n;
 		nOutputs++;
 
-		int originalLen = synapseGenes.length;
-		synapseGenes = Arrays.copyOf(synapseGenes, originalLen + sensorNeuronGenes.length);
+		SynapseGene[] newGenes = new SynapseGene[sensorNeuronGenes.length];
 		for (int i = 0; i < sensorNeuronGenes.length; i++)
-			synapseGenes[originalLen + i] = new SynapseGene(sensorNeuronGenes[i], n);
+			newGenes[i] = new SynapseGene(sensorNeuronGenes[i], n);
+		addSynapseGenes(newGenes);
+	}
+
+	/**
+	 * Adds the genes in order, keeping the synapse genes sorted by innovation number.
+	 * New genes normally carry the highest innovation numbers and are simply appended;
+	 * they only need moving into place once the innovation counter restarts after loading.
+	 */
+	private void addSynapseGenes(SynapseGene... genes) {
+		int n = synapseGenes.length;
+		synapseGenes = Arrays.copyOf(synapseGenes, n + genes.length);
+		for (SynapseGene g : genes) {
+			int i = n++;
+			while (i > 0 && synapseGenes[i - 1].getInnovation() > g.getInnovation()) {
+				synapseGenes[i] = synapseGenes[i - 1];
+				i--;
+			}
+			synapseGenes[i] = g;
+			if (i < n - 1)
+				synapseIndex = null;
+			else if (synapseIndex != null && !g.isDisabled())
+				synapseIndex.putIfAbsent(synapseKey(g.getIn(), g.getOut()), i);
+		}
+	}
+
+	/**
+	 * Replaces the gene at the given index. The array may be shared with the genome
+	 * this one was copied from, so it is copied rather than written in place.
+	 */
+	private void setSynapseGene(int index, SynapseGene g) {
+		SynapseGene old = synapseGenes[index];
+		synapseGenes = synapseGenes.clone();
+		synapseGenes[index] = g;
+
+		if (synapseIndex == null || !g.isDisabled() || old.isDisabled())
+			return;
+		long key = synapseKey(g.getIn(), g.getOut());
+		Integer first = synapseIndex.get(key);
+		if (first == null || first != index)
+			return;
+		synapseIndex.remove(key);
+		for (int i = index + 1; i < synapseGenes.length; i++)
+			if (synapseKey(synapseGenes[i].getIn(), synapseGenes[i].getOut()) == key
+					&& !synapseGenes[i].isDisabled()) {
+				synapseIndex.put(key, i);
+				break;
+			}
+	}
+
+	private static long synapseKey(NeuronGene in, NeuronGene out) {
+		return ((long) in.getId() << 32) | (out.getId() & 0xffffffffL);
+	}
+
+	/**
+	 * Maps each connection to the index of its first enabled synapse gene,
+	 * built on first use after the genome is created or loaded.
+	 */
+	private Map<Long, Integer> getSynapseIndex() {
+		if (synapseIndex == null) {
+			synapseIndex = new HashMap<>();
+			for (int i = 0; i < synapseGenes.length; i++)
+				if (!synapseGenes[i].isDisabled())
+					synapseIndex.putIfAbsent(synapseKey(synapseGenes[i].getIn(), synapseGenes[i].getOut()), i);
+		}
+		return synapseIndex;
 	}
 
-	private void createHiddenBetween(SynapseGene g) {
+	private void createHiddenBetween(int geneIndex) {
+		SynapseGene g = synapseGenes[geneIndex];
 
 		NeuronGene n = new NeuronGene(
 			nNeuronGenes++, Neuron.Type.HIDDEN, defaultActivation
@@ -136,23 +199,14 @@ public class NetworkGenome implements Serializable
 		SynapseGene inConnection = new SynapseGene(g.getIn(), n, 1f);
 		SynapseGene outConnection = new SynapseGene(n, g.getOut(), g.getWeight());
 
-		synapseGenes = Arrays.copyOf(synapseGenes, synapseGenes.length + 2);
-		synapseGenes[synapseGenes.length - 2] = inConnection;
-		synapseGenes[synapseGenes.length - 1] = outConnection;
-
-		g.setDisabled(true);
+		setSynapseGene(geneIndex, g.copy(true));
+		addSynapseGenes(inConnection, outConnection);
 	}
 
 	private int getSynapseGeneIndex(NeuronGene in, NeuronGene out) {
-
-		for (int i = 0; i < synapseGenes.length - 2; i++) {
-			if (synapseGenes[i].getIn().equals(in) &&
-					synapseGenes[i].getOut().equals(out) &&
-					!synapseGenes[i].isDisabled()) {
-				return i;
-			}
-		}
-		return -1;
+		Integer i = getSynapseIndex().get(synapseKey(in, out));
+		// the two most recently added genes are not considered
+		return i != null && i < synapseGenes.length - 2 ? i : -1;
 	}
 	
 	private void mutateConnection(NeuronGene in, NeuronGene out) {
@@ -161,26 +215,25 @@ public class NetworkGenome implements Serializable
 		int geneIndex = getSynapseGeneIndex(in, out);
 
 		if (geneIndex == -1) {
-			synapseGenes = Arrays.copyOf(synapseGenes, synapseGenes.length + 1);
-			synapseGenes[synapseGenes.length - 1] = new SynapseGene(in, out);
+			addSynapseGenes(new SynapseGene(in, out));
 		} else {
 			SynapseGene g = synapseGenes[geneIndex];
-			if (random.nextBoolean())
-				createHiddenBetween(g);
+			if (Simulation.RANDOM.nextBoolean())
+				createHiddenBetween(geneIndex);
 			else
-				synapseGenes[geneIndex] = new SynapseGene(in, out, SynapseGene.randomInitialWeight(), g.getInnovation());
+				setSynapseGene(geneIndex, new SynapseGene(in, out, SynapseGene.randomInitialWeight(), g.getInnovation()));
 		}
 	}
 	
 	public void mutate()
 	{
-		int i = random.nextInt(sensorNeuronGenes.length + hiddenNeuronGenes.length);
+		int i = Simulation.RANDOM.nextInt(sensorNeuronGenes.length + hiddenNeuronGenes.length);
 		NeuronGene in, out;
 		if (i < sensorNeuronGenes.length)
 			in = sensorNeuronGenes[i];
 		else in = hiddenNeuronGenes[i - sensorNeuronGenes.length];
 
-		int j = random.nextInt(hiddenNeuronGenes.length + outputNeuronGenes.length);
+		int j = Simulation.RANDOM.nextInt(hiddenNeuronGenes.length + outputNeuronGenes.length);
 		if (j < hiddenNeuronGenes.length)
 			out = hiddenNeuronGenes[j];
 		else out = outputNeuronGenes[j - hiddenNeuronGenes.length];
@@ -188,68 +241,83 @@ public class NetworkGenome implements Serializable
 		mutateConnection(in, out);
 	}
 	
+	private static SynapseGene[] sortedByInnovation(SynapseGene[] genes) {
+		for (int i = 1; i < genes.length; i++)
+			if (genes[i - 1].getInnovation() > genes[i].getInnovation()) {
+				// genomes from older saves were not kept sorted
+				SynapseGene[] sorted = genes.clone();
+				Arrays.sort(sorted);
+				return sorted;
+			}
+		return genes;
+	}
+
+	/**
+	 * Merges the synapse genes of both parents in innovation order. Genes present in both are
+	 * taken from either parent at random, and genes present in only one are inherited at
+	 * random, except for those leading from sensors, which are always inherited.
+	 */
 	public NetworkGenome crossover(NetworkGenome other)
 	{
-		Map<Integer, SynapseGene> myConnections = Arrays.stream(synapseGenes)
-				.collect(Collectors.toMap(SynapseGene::getInnovation, Function.identity()));
-		Map<Integer, SynapseGene> theirConnections = Arrays.stream(other.synapseGenes)
-				.collect(Collectors.toMap(SynapseGene::getInnovation, Function.identity()));
-
-		Set<Integer> innovationNumbers = new HashSet<>();
-		innovationNumbers.addAll(myConnections.keySet());
-		innovationNumbers.addAll(theirConnections.keySet());
-
-		HashSet<SynapseGene> childSynapses = new HashSet<>();
+		SynapseGene[] mine = sortedByInnovation(synapseGenes);
+		SynapseGene[] theirs = sortedByInnovation(other.synapseGenes);
 
-		for (int innovation : innovationNumbers) {
-			boolean iContain = myConnections.containsKey(innovation);
-			boolean theyContain = theirConnections.containsKey(innovation);
+		SynapseGene[] childSynapses = new SynapseGene[mine.length + theirs.length];
+		int nChildSynapses = 0;
+		int i = 0, j = 0;
+		while (i < mine.length || j < theirs.length) {
 			SynapseGene g;
-			if (iContain && theyContain) {
-				g = Simulation.RANDOM.nextBoolean() ?
-						myConnections.get(innovation) :
-						theirConnections.get(innovation);
+			if (i < mine.length && j < theirs.length
+					&& mine[i].getInnovation() == theirs[j].getInnovation()) {
+				g = Simulation.RANDOM.nextBoolean() ? mine[i] : theirs[j];
+				i++;
+				j++;
 				if (g.isDisabled() && Simulation.RANDOM.nextFloat() < Settings.globalMutationChance)
-					g.setDisabled(false);
-				childSynapses.add(g);
+					g = g.copy(false);
+				childSynapses[nChildSynapses++] = g;
 				continue;
-
-			} else if (iContain) {
-				g = myConnections.get(innovation);
-			} else {
-				g = theirConnections.get(innovation);
 			}
 
+			if (j == theirs.length || (i < mine.length && mine[i].getInnovation() < theirs[j].getInnovation()))
+				g = mine[i++];
+			else
+				g = theirs[j++];
+
 			if (g.getIn().getType().equals(Neuron.Type.SENSOR) || Simulation.RANDOM.nextBoolean())
-				childSynapses.add(g);
+				childSynapses[nChildSynapses++] = g;
 		}
+		childSynapses = Arrays.copyOf(childSynapses, nChildSynapses);
+
+		int maxId = 0;
+		for (SynapseGene g : childSynapses)
+			maxId = Math.max(maxId, Math.max(g.getIn().getId(), g.getOut().getId()));
+
+		NeuronGene[] neuronsById = new NeuronGene[maxId + 1];
+		int[] typeCounts = new int[Neuron.Type.values().length];
+		for (SynapseGene g : childSynapses)
+			for (int end = 0; end < 2; end++) {
+				NeuronGene n = end == 0 ? g.getIn() : g.getOut();
+				if (neuronsById[n.getId()] == null) {
+					neuronsById[n.getId()] = n;
+					typeCounts[n.getType().ordinal()]++;
+				}
+			}
 
-		SynapseGene[] childSynapseArray = childSynapses.toArray(new SynapseGene[0]);
-
-		Set<NeuronGene> neuronGenes = childSynapses.stream()
-				.flatMap(s -> Stream.of(s.getIn(), s.getOut()))
-				.collect(Collectors.toSet());
-
-		NeuronGene[] childSensorGenes = neuronGenes.stream()
-				.filter(n -> n.getType().equals(Neuron.Type.SENSOR))
-				.sorted(Comparator.comparingInt(NeuronGene::getId))
-				.toArray(NeuronGene[]::new);
-
-		NeuronGene[] childOutputGenes = neuronGenes.stream()
-				.filter(n -> n.getType().equals(Neuron.Type.OUTPUT))
-				.sorted(Comparator.comparingInt(NeuronGene::getId))
-				.toArray(NeuronGene[]::new);
-
-		NeuronGene[] childHiddenGenes = neuronGenes.stream()
-				.filter(n -> n.getType().equals(Neuron.Type.HIDDEN))
-				.sorted(Comparator.comparingInt(NeuronGene::getId))
-				.toArray(NeuronGene[]::new);
+		NeuronGene[][] childNeuronGenes = new NeuronGene[typeCounts.length][];
+		for (int t = 0; t < typeCounts.length; t++)
+			childNeuronGenes[t] = new NeuronGene[typeCounts[t]];
+		Arrays.fill(typeCounts, 0);
+		for (NeuronGene n : neuronsById)
+			if (n != null) {
+				int t = n.getType().ordinal();
+				childNeuronGenes[t][typeCounts[t]++] = n;
+			}
 
 		return new NetworkGenome(
-				childSensorGenes,
-				childOutputGenes,
-				childHiddenGenes,
-				childSynapseArray,
+				childNeuronGenes[Neuron.Type.SENSOR.ordinal()],
+				childNeuronGenes[Neuron.Type.OUTPUT.ordinal()],
+				childNeuronGenes[Neuron.Type.HIDDEN.ordinal()],
+				childSynapses,
 				defaultActivation
 		);
 	}
@@ -265,26 +333,127 @@ public class NetworkGenome implements Serializable
 		return id;
 	}
 
+	private NeuronGene[][] neuronGenes() {
+		return new NeuronGene[][]{sensorNeuronGenes, hiddenNeuronGenes, outputNeuronGenes};
+	}
+
+	/**
+	 * @return the ids and types of the neuron genes, followed by the synapse genes in order,
+	 * for comparing genomes by the network they build.
+	 */
+	int[] structure() {
+		int n = 0;
+		for (NeuronGene[] genes : neuronGenes())
+			n += 2 * genes.length + 1;
+		int[] structure = new int[n + 4 * synapseGenes.length];
+		int i = 0;
+		for (NeuronGene[] genes : neuronGenes()) {
+			structure[i++] = genes.length;
+			for (NeuronGene g : genes) {
+				structure[i++] = g.getId();
+				structure[i++] = g.getType().ordinal();
+			}
+		}
+		for (SynapseGene g : synapseGenes) {
+			structure[i++] = g.getIn().getId();
+			structure[i++] = g.getOut().getId();
+			structure[i++] = Float.floatToIntBits(g.getWeight());
+			structure[i++] = g.isDisabled() ? 1 : 0;
+		}
+		return structure;
+	}
+
+	Neuron.Activation[] activations() {
+		return Arrays.stream(neuronGenes()).flatMap(Arrays::stream)
+				.map(NeuronGene::getActivation).toArray(Neuron.Activation[]::new);
+	}
+
+	String[] labels() {
+		return Arrays.stream(neuronGenes()).flatMap(Arrays::stream)
+				.map(NeuronGene::getLabel).toArray(String[]::new);
+	}
+
+	private boolean isExpressed(SynapseGene g) {
+		return !g.isDisabled() && !g.getOut().getType().equals(Neuron.Type.SENSOR);
+	}
+
+	/**
+	 * Walks back from the outputs along the enabled synapses to find the neurons that
+	 * can affect an output. Sensors and outputs are always kept, so that the inputs and
+	 * outputs of the network still line up with the genome.
+	 * @return whether each neuron, indexed by id, is part of the runtime network.
+	 */
+	private boolean[] liveNeurons(int n) {
+		int[] inputStart = new int[n + 1];
+		for (SynapseGene g : synapseGenes)
+			if (isExpressed(g))
+				inputStart[g.getOut().getId() + 1]++;
+		for (int id = 0; id < n; id++)
+			inputStart[id + 1] += inputStart[id];
+		int[] sources = new int[inputStart[n]];
+		int[] filled = new int[n];
+		for (SynapseGene g : synapseGenes)
+			if (isExpressed(g)) {
+				int out = g.getOut().getId();
+				sources[inputStart[out] + filled[out]++] = g.getIn().getId();
+			}
+
+		boolean[] live = new boolean[n];
+		Deque<Integer> explore = new ArrayDeque<>();
+		for (NeuronGene g : outputNeuronGenes) {
+			live[g.getId()] = true;
+			explore.push(g.getId());
+		}
+		while (!explore.isEmpty()) {
+			int id = explore.pop();
+			for (int k = inputStart[id]; k < inputStart[id + 1]; k++)
+				if (!live[sources[k]]) {
+					live[sources[k]] = true;
+					explore.push(sources[k]);
+				}
+		}
+		for (NeuronGene g : sensorNeuronGenes)
+			live[g.getId()] = true;
+		return live;
+	}
+
+	/**
+	 * Builds the runtime network. Disabled synapses are not expressed, and hidden neurons
+	 * that cannot reach an output are left out, so that they are never evaluated.
+	 * The genome itself is left whole.
+	 */
 	public NeuralNetwork phenotype()
 	{
+		if (Settings.compiledNetworks)
+			return new NeuralNetwork(PhenotypeCache.get(this));
+		return graphPhenotype();
+	}
 
-		Neuron[] neurons = new Neuron[maxNeuronId() + 1];
+	/**
+	 * Builds the network as an object graph of {@link Neuron}s, the reference that
+	 * {@link #compile()} must evaluate identically to.
+	 */
+	NeuralNetwork graphPhenotype()
+	{
+		Neuron[] neuronsById = new Neuron[maxNeuronId() + 1];
+		boolean[] live = liveNeurons(neuronsById.length);
 
 		for (NeuronGene g : sensorNeuronGenes) {
 
 			Neuron[] inputs = new Neuron[0];
 			float[] weights = new float[0];
 
-			neurons[g.getId()] = new Neuron(
+			neuronsById[g.getId()] = new Neuron(
 					g.getId(), inputs, weights, g.getType(), g.getActivation(), g.getLabel()
 			);
 		}
 
-		int[] inputCounts = new int[neurons.length];
+		int[] inputCounts = new int[neuronsById.length];
 		Arrays.fill(inputCounts, 0);
 
 		for (SynapseGene g : synapseGenes)
-			inputCounts[g.getOut().getId()]++;
+			if (isExpressed(g))
+				inputCounts[g.getOut().getId()]++;
 
 		for (int i = 0; i < hiddenNeuronGenes.length + outputNeuronGenes.length; i++) {
 			NeuronGene g;
@@ -292,29 +461,143 @@ public class NetworkGenome implements Serializable
 				g = hiddenNeuronGenes[i];
 			else g = outputNeuronGenes[i - hiddenNeuronGenes.length];
 
+			if (!live[g.getId()])
+				continue;
+
 			Neuron[] inputs = new Neuron[inputCounts[g.getId()]];
 			float[] weights = new float[inputCounts[g.getId()]];
 
-			neurons[g.getId()] = new Neuron(
+			neuronsById[g.getId()] = new Neuron(
 					g.getId(), inputs, weights, g.getType(), g.getActivation(), g.getLabel()
 			);
 		}
 
 		Arrays.fill(inputCounts, 0);
 		for (SynapseGene g : synapseGenes) {
+			if (!isExpressed(g) || !live[g.getOut().getId()])
+				continue;
 			int i = inputCounts[g.getOut().getId()]++;
-			neurons[g.getOut().getId()].getInputs()[i] = neurons[g.getIn().getId()];
-			neurons[g.getOut().getId()].getWeights()[i] = g.getWeight();
+			neuronsById[g.getOut().getId()].getInputs()[i] = neuronsById[g.getIn().getId()];
+			neuronsById[g.getOut().getId()].getWeights()[i] = g.getWeight();
 		}
 
+		int nLive = 0;
+		for (int id = 0; id < neuronsById.length; id++)
+			if (live[id]) {
+				if (neuronsById[id] == null)
+					throw new IllegalArgumentException("Cannot handle null neurons.");
+				nLive++;
+			}
+		Neuron[] neurons = new Neuron[nLive];
+		int i = 0;
+		for (int id = 0; id < neuronsById.length; id++)
+			if (live[id])
+				neurons[i++] = neuronsById[id];
+
 		return new NeuralNetwork(neurons);
 	}
 
+	/**
+	 * Builds the flat-array form of the network that {@link #phenotype()} would create, with
+	 * the same neurons and each neuron's inputs in the same order, so that both evaluate identically.
+	 */
+	public CompiledNetwork compile()
+	{
+		int n = maxNeuronId() + 1;
+		Neuron.Type[] idTypes = new Neuron.Type[n];
+		Neuron.Activation[] idActivations = new Neuron.Activation[n];
+		String[] idLabels = new String[n];
+		boolean[] present = new boolean[n];
+
+		for (NeuronGene[] genes : neuronGenes())
+			for (NeuronGene g : genes) {
+				idTypes[g.getId()] = g.getType();
+				idActivations[g.getId()] = g.getActivation();
+				idLabels[g.getId()] = g.getLabel();
+				present[g.getId()] = true;
+			}
+
+		boolean[] live = liveNeurons(n);
+		int[] indexOf = new int[n];
+		int size = 0;
+		for (int id = 0; id < n; id++) {
+			if (live[id] && !present[id])
+				throw new IllegalArgumentException("Cannot handle null neurons.");
+			indexOf[id] = live[id] ? size++ : -1;
+		}
+
+		int[] neuronIds = new int[size];
+		Neuron.Type[] types = new Neuron.Type[size];
+		Neuron.Activation[] activations = new Neuron.Activation[size];
+		String[] labels = new String[size];
+		for (int id = 0; id < n; id++) {
+			int i = indexOf[id];
+			if (i < 0)
+				continue;
+			neuronIds[i] = id;
+			types[i] = idTypes[id];
+			activations[i] = idActivations[id];
+			labels[i] = idLabels[id];
+		}
+
+		int[] inputStart = new int[size + 1];
+		for (SynapseGene g : synapseGenes)
+			if (isExpressed(g) && live[g.getOut().getId()])
+				inputStart[indexOf[g.getOut().getId()] + 1]++;
+		for (int i = 0; i < size; i++)
+			inputStart[i + 1] += inputStart[i];
+
+		int[] sources = new int[inputStart[size]];
+		float[] weights = new float[inputStart[size]];
+		int[] filled = new int[size];
+		for (SynapseGene g : synapseGenes) {
+			if (!isExpressed(g) || !live[g.getOut().getId()])
+				continue;
+			int out = indexOf[g.getOut().getId()];
+			int k = inputStart[out] + filled[out]++;
+			sources[k] = indexOf[g.getIn().getId()];
+			weights[k] = g.getWeight();
+		}
+
+		return new CompiledNetwork(neuronIds, types, activations, labels, inputStart, sources, weights);
+	}
+
+	/**
+	 * NEAT compatibility distance: the numbers of excess and disjoint synapse genes,
+	 * normalised by the size of the larger genome, plus the mean weight difference of
+	 * the genes both share. Once normalised, genomes sharing no genes are 2 apart, so
+	 * speciation thresholds are around 1.
+	 */
 	public float distance(NetworkGenome other)
 	{
-//		int excess = 0;
-//		int disjoint = 0;
-		return 0;
+		SynapseGene[] mine = sortedByInnovation(synapseGenes);
+		SynapseGene[] theirs = sortedByInnovation(other.synapseGenes);
+
+		int disjoint = 0, matching = 0;
+		float weightDifference = 0;
+		int i = 0, j = 0;
+		while (i < mine.length && j < theirs.length) {
+			int myInnovation = mine[i].getInnovation(), theirInnovation = theirs[j].getInnovation();
+			if (myInnovation == theirInnovation) {
+				weightDifference += Math.abs(mine[i++].getWeight() - theirs[j++].getWeight());
+				matching++;
+			} else if (myInnovation < theirInnovation) {
+				disjoint++;
+				i++;
+			} else {
+				disjoint++;
+				j++;
+			}
+		}
+		int excess = (mine.length - i) + (theirs.length - j);
+
+		// small genomes are not normalised, as in the original NEAT
+		int n = Math.max(mine.length, theirs.length);
+		if (n < 20)
+			n = 1;
+		float meanWeightDifference = matching > 0 ? weightDifference / matching : 0;
+		return (excessCoefficient * excess + disjointCoefficient * disjoint) / n
+				+ weightCoefficient * meanWeightDifference;
 	}
 
 	public String toString()
@@ -331,6 +614,15 @@ public class NetworkGenome implements Serializable
 		return str.toString();
 	}
 
+	/**
+	 * Numbers the synapse genes created with provisional innovations, in the order they
+	 * were added. As they were added last, the genes stay sorted by innovation.
+	 */
+	public void assignInnovations() {
+		for (SynapseGene g : synapseGenes)
+			g.assignInnovation();
+	}
+
 	public SynapseGene[] getSynapseGenes() {
 		return synapseGenes;
 	}
@@ -350,6 +642,15 @@ public class NetworkGenome implements Serializable
 		return false;
 	}
 
+	public boolean hasRetinaSensors(int retinaSize) {
+		for (int i = 0; i < retinaSize; i++) {
+			String label = Retina.retinaCellLabel(i);
+			if (!hasSensor(label + " R") || !hasSensor(label + " G") || !hasSensor(label + " B"))
+				return false;
+		}
+		return true;
+	}
+
 	public void ensureRetinaSensorsExist(int retinaSize) {
 		for (int i = 0; i < retinaSize; i++) {
 			String label = Retina.retinaCellLabel(i);
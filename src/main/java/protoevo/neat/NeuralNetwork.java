@@ -1,5 +1,7 @@
 package protoevo.neat;
 
+import protoevo.core.SimulationExecutor;
+
 import java.io.Serializable;
 import java.util.*;
 import java.util.stream.Collectors;
@@ -9,16 +11,36 @@ public class NeuralNetwork implements Serializable
 {
     private static final long serialVersionUID = 1L;
 
-    private final Neuron[] outputNeurons;
-    private final Neuron[] inputNeurons;
+    private Neuron[] outputNeurons;
+    private Neuron[] inputNeurons;
     private final float[] outputs;
-    private final Neuron[] neurons;
+    private Neuron[] neurons;
     private final int depth;
     private final int nInputs;
     private boolean computedGraphics = false;
     private int nodeSpacing;
 
+    private final CompiledNetwork compiled;
+    private float[] state, nextState, lastState;
+    private int disabledInputsFrom = -1;
+
+    /**
+     * Evaluates the network from flat arrays, with the same synchronous two-phase update
+     * as the object graph of {@link Neuron}s. The neurons are only created on demand,
+     * for inspecting the network in the UI.
+     */
+    public NeuralNetwork(CompiledNetwork compiled) {
+        this.compiled = compiled;
+        this.nInputs = compiled.getInputSize();
+        this.depth = compiled.getDepth();
+        state = new float[compiled.getSize()];
+        nextState = new float[compiled.getSize()];
+        lastState = new float[compiled.getSize()];
+        outputs = new float[compiled.getOutputSize()];
+    }
+
     public NeuralNetwork(Neuron[] neurons) {
+        this.compiled = null;
         this.neurons = neurons;
 
         int nSensors = 0;
@@ -60,7 +82,10 @@ public class NeuralNetwork implements Serializable
     }
 
     public int calculateDepth() {
-        boolean[] visited = new boolean[neurons.length];
+        int maxId = 0;
+        for (Neuron n : neurons)
+            maxId = Math.max(maxId, n.getId());
+        boolean[] visited = new boolean[maxId + 1];
         Arrays.fill(visited, false);
         int depth = calculateDepth(outputNeurons, visited);
 
@@ -98,18 +123,53 @@ public class NeuralNetwork implements Serializable
     }
 
     public void setInput(float ... values) {
+        if (compiled != null) {
+            for (int i = 0; i < values.length; i++)
+                state[compiled.sensorIndices[i]] = values[i];
+            return;
+        }
         for (int i = 0; i < values.length; i++)
             inputNeurons[i].setState(values[i]);
     }
 
     public void tick()
     {
+        if (compiled != null) {
+            compiled.tick(state, nextState);
+            float[] oldLastState = lastState;
+            lastState = state;
+            state = nextState;
+            nextState = oldLastState;
+            return;
+        }
         for (Neuron n : neurons) n.tick();
         for (Neuron n : neurons) n.update();
     }
 
+    /**
+     * Ticks every network, grouping those compiled from the same {@link CompiledNetwork} so
+     * that each group is evaluated back to back on one thread while its topology is in cache.
+     */
+    public static void tickAll(List<NeuralNetwork> networks) {
+        Map<Object, List<NeuralNetwork>> groups = new IdentityHashMap<>();
+        for (NeuralNetwork network : networks) {
+            Object key = network.compiled != null ? network.compiled : network;
+            groups.computeIfAbsent(key, k -> new ArrayList<>()).add(network);
+        }
+        List<List<NeuralNetwork>> batches = new ArrayList<>(groups.values());
+        SimulationExecutor.forEach(batches.size(), i -> {
+            for (NeuralNetwork network : batches.get(i))
+                network.tick();
+        });
+    }
+
     public float[] outputs()
     {
+        if (compiled != null) {
+            for (int i = 0; i < outputs.length; i++)
+                outputs[i] = state[compiled.outputIndices[i]];
+            return outputs;
+        }
         for (int i = 0; i < outputNeurons.length; i++)
             outputs[i] = outputNeurons[i].getState();
         return outputs;
@@ -118,7 +178,7 @@ public class NeuralNetwork implements Serializable
     @Override
     public String toString()
     {
-        return Stream.of(neurons)
+        return Stream.of(getNeurons())
                 .map(Neuron::toString)
                 .collect(Collectors.joining("\n"));
     }
@@ -128,13 +188,31 @@ public class NeuralNetwork implements Serializable
     }
 
     public int getSize() {
-        return neurons.length;
+        return compiled != null ? compiled.getSize() : neurons.length;
     }
 
     public Neuron[] getNeurons() {
+        if (compiled == null)
+            return neurons;
+
+        if (neurons == null) {
+            neurons = compiled.createNeurons();
+            if (disabledInputsFrom >= 0)
+                for (int idx = disabledInputsFrom; idx < nInputs; idx++)
+                    neurons[compiled.ids[compiled.sensorIndices[idx]]].setConnectedToOutput(false);
+        }
+        for (int i = 0; i < state.length; i++) {
+            Neuron neuron = neurons[compiled.ids[i]];
+            neuron.setLastState(lastState[i]);
+            neuron.setState(state[i]);
+        }
         return neurons;
     }
 
+    public CompiledNetwork getCompiledNetwork() {
+        return compiled;
+    }
+
     public boolean hasComputedGraphicsPositions() {
         return computedGraphics;
     }
@@ -152,6 +230,11 @@ public class NeuralNetwork implements Serializable
     }
 
     public void disableInputsFrom(int i) {
+        if (compiled != null) {
+            disabledInputsFrom = i;
+            neurons = null;
+            return;
+        }
         for (int idx = i; idx < inputNeurons.length; idx++)
             inputNeurons[idx].setConnectedToOutput(false);
 //        disableOnlyConnectedToDisabled();
@@ -1,18 +1,62 @@
 package protoevo.neat;
 
 import java.io.Serializable;
+import java.lang.invoke.SerializedLambda;
 import java.util.Comparator;
-import java.util.function.Function;
 
 /**
  * Created by dylan on 26/05/2017.
  */
 public class Neuron implements Comparable<Neuron>, Serializable {
 
-    public interface Activation extends Function<Float, Float>, Serializable {
-        Activation SIGMOID = z -> 1 / (1 + (float) Math.exp(-z));
-        Activation LINEAR = z -> z;
-        Activation TANH = x -> (float) Math.tanh(x);
+    public interface Activation extends Serializable {
+        // of the interface when it extended Function<Float, Float>, so that saves from then resolve
+        long serialVersionUID = 1908032508478030315L;
+
+        Activation SIGMOID = StandardActivation.SIGMOID;
+        Activation LINEAR = StandardActivation.LINEAR;
+        Activation TANH = StandardActivation.TANH;
+
+        float apply(float z);
+
+        /**
+         * Resolves the activations of older saves, which were serialized as lambdas. A serialized
+         * lambda is resolved by calling this method of the class it was created in, and the lambdas
+         * are told apart by the names javac gave their bodies.
+         */
+        private static Object $deserializeLambda$(SerializedLambda lambda) {
+            switch (lambda.getImplMethodName()) {
+                case "lambda$static$1c6deca6$1": return SIGMOID;
+                case "lambda$static$5d7191c1$1": return LINEAR;
+                case "lambda$static$2a78e7f$1": return TANH;
+                default: throw new IllegalArgumentException("Invalid lambda deserialization");
+            }
+        }
+    }
+
+    /**
+     * The activations genomes are built with, as enum constants so that they keep their
+     * identity when deserialized.
+     */
+    private enum StandardActivation implements Activation {
+        SIGMOID {
+            @Override
+            public float apply(float z) {
+                return Activations.sigmoid(z);
+            }
+        },
+        LINEAR {
+            @Override
+            public float apply(float z) {
+                return z;
+            }
+        },
+        TANH {
+            @Override
+            public float apply(float z) {
+                return Activations.tanh(z);
+            }
+        }
     }
 
     public enum Type implements Serializable {
@@ -94,6 +138,10 @@ public class Neuron implements Comparable<Neuron>, Serializable {
         return this;
     }
 
+    void setLastState(float s) {
+        lastState = s;
+    }
+
     public Neuron setActivation(Neuron.Activation activation) {
         this.activation = activation;
         return this;
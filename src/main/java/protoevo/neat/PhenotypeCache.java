@@ -0,0 +1,84 @@
+package protoevo.neat;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import protoevo.core.Settings;
+
+import java.util.Arrays;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Bounded, concurrent cache of the {@link CompiledNetwork}s built from network genomes,
+ * keyed by the content of the genome rather than its identity. Children that inherit their
+ * parent's network genes unchanged share the parent's compiled network, and only allocate
+ * their own state buffers in {@link NeuralNetwork}.
+ */
+public final class PhenotypeCache {
+
+    private static final Cache<StructureKey, CompiledNetwork> cache = CacheBuilder.newBuilder()
+            .maximumSize(Math.max(Settings.phenotypeCacheSize, 0))
+            .build();
+
+    private PhenotypeCache() {}
+
+    public static CompiledNetwork get(NetworkGenome genome) {
+        if (Settings.phenotypeCacheSize <= 0)
+            return genome.compile();
+        try {
+            return cache.get(new StructureKey(genome), genome::compile);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IllegalArgumentException)
+                throw (IllegalArgumentException) e.getCause();
+            throw new RuntimeException(e.getCause());
+        }
+    }
+
+    public static long size() {
+        return cache.size();
+    }
+
+    /**
+     * Everything about a genome that {@link NetworkGenome#compile()} reads: the neuron genes
+     * and the synapse genes, in order. Activations are compared by identity, as the
+     * compiled network holds on to the genome's activation objects.
+     */
+    static final class StructureKey {
+        private final int[] structure;
+        private final Neuron.Activation[] activations;
+        private final String[] labels;
+        private final int hash;
+
+        StructureKey(int[] structure, Neuron.Activation[] activations, String[] labels) {
+            this.structure = structure;
+            this.activations = activations;
+            this.labels = labels;
+            int h = Arrays.hashCode(structure);
+            for (Neuron.Activation activation : activations)
+                h = 31 * h + System.identityHashCode(activation);
+            this.hash = 31 * h + Arrays.hashCode(labels);
+        }
+
+        StructureKey(NetworkGenome genome) {
+            this(genome.structure(), genome.activations(), genome.labels());
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof StructureKey))
+                return false;
+            StructureKey other = (StructureKey) o;
+            if (hash != other.hash || !Arrays.equals(structure, other.structure)
+                    || activations.length != other.activations.length)
+                return false;
+            for (int i = 0; i < activations.length; i++)
+                if (activations[i] != other.activations[i])
+                    return false;
+            return Arrays.equals(labels, other.labels);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package protoevo.neat;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Incremental NEAT speciation: each new network genome joins the first species whose
+ * representative is within the compatibility threshold of it, or founds a new species,
+ * so assigning a genome costs one {@link NetworkGenome#distance(NetworkGenome)} per living
+ * species rather than one per member of the population.
+ * <p>
+ * The representative of a species is its founder, and a species is dropped from the
+ * index once {@link #retainSpecies(Collection)} finds no living members.
+ */
+public class SpeciesIndex implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private static class Species implements Serializable {
+        private static final long serialVersionUID = 1L;
+        private final int id;
+        private final NetworkGenome representative;
+
+        Species(int id, NetworkGenome representative) {
+            this.id = id;
+            this.representative = representative;
+        }
+    }
+
+    private final float threshold;
+    private final List<Species> species = new ArrayList<>();
+    private int nextId = 1;
+
+    public SpeciesIndex(float threshold) {
+        this.threshold = threshold;
+    }
+
+    /**
+     * @return the id of the species the genome belongs to, ids starting from 1.
+     */
+    public synchronized int assign(NetworkGenome genome) {
+        for (Species s : species)
+            if (genome.distance(s.representative) < threshold)
+                return s.id;
+        Species s = new Species(nextId++, genome);
+        species.add(s);
+        return s.id;
+    }
+
+    /**
+     * Drops the species whose ids are not in the given collection of living species.
+     */
+    public synchronized void retainSpecies(Collection<Integer> living) {
+        species.removeIf(s -> !living.contains(s.id));
+    }
+
+    public synchronized int numberOfSpecies() {
+        return species.size();
+    }
+
+    public synchronized int numberOfSpeciesCreated() {
+        return nextId - 1;
+    }
+}
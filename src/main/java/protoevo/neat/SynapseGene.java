@@ -2,14 +2,21 @@ package protoevo.neat;
 
 
 import protoevo.core.Simulation;
+import protoevo.core.SimulationRandom;
 
 import java.io.Serializable;
 import java.util.Objects;
 
 public class SynapseGene implements Comparable<SynapseGene>, Serializable
 {
+    /**
+     * The innovation of genes created while entities update in parallel, which are only
+     * numbered once their genome joins the tank, so that the numbers do not depend on
+     * which thread created them first. It sorts after every numbered innovation.
+     */
+    public static final int PROVISIONAL_INNOVATION = Integer.MAX_VALUE;
     private static int globalInnovation = 0;
-    private final int innovation;
+    private int innovation;
     private NeuronGene in, out;
     private float weight;
     private boolean disabled;
@@ -23,7 +30,19 @@ public class SynapseGene implements Comparable<SynapseGene>, Serializable
     }
 
     public SynapseGene(NeuronGene in, NeuronGene out, float weight) {
-        this(in, out, weight, globalInnovation++);
+        this(in, out, weight, newInnovation());
+    }
+
+    private static int newInnovation() {
+        return SimulationRandom.isInEntityStream() ? PROVISIONAL_INNOVATION : globalInnovation++;
+    }
+
+    /**
+     * Numbers a gene created with a provisional innovation. Must not be called in parallel.
+     */
+    void assignInnovation() {
+        if (innovation == PROVISIONAL_INNOVATION)
+            innovation = globalInnovation++;
     }
 
     public static float randomInitialWeight() {
@@ -31,7 +50,7 @@ public class SynapseGene implements Comparable<SynapseGene>, Serializable
     }
 
     public SynapseGene(NeuronGene in, NeuronGene out) {
-        this(in, out, randomInitialWeight(), globalInnovation++);
+        this(in, out, randomInitialWeight(), newInnovation());
     }
 
     @Override
@@ -64,6 +83,16 @@ public class SynapseGene implements Comparable<SynapseGene>, Serializable
                 innovation, in.getId(), out.getId(), weight, disabled);
     }
 
+    /**
+     * @return a gene with the same innovation, connection and weight, for changing
+     * whether it is disabled without affecting the genomes sharing this gene.
+     */
+    public SynapseGene copy(boolean disabled) {
+        SynapseGene g = new SynapseGene(in, out, weight, innovation);
+        g.disabled = disabled;
+        return g;
+    }
+
     public boolean isDisabled() {
         return disabled;
     }
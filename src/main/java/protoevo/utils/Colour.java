@@ -0,0 +1,50 @@
+package protoevo.utils;
+
+/**
+ * Colours packed into an int as 0xAARRGGBB, the layout of {@link java.awt.Color#getRGB()},
+ * so the simulation can pass colours around without allocating or depending on AWT.
+ * The renderer turns them into {@link java.awt.Color}s with {@code new Color(argb, true)}.
+ */
+public final class Colour {
+
+    public static final int WHITE = rgb(255, 255, 255);
+    public static final int BLACK = rgb(0, 0, 0);
+
+    private static final double DARKER_FACTOR = 0.7;
+
+    private Colour() {}
+
+    public static int rgb(int r, int g, int b) {
+        return argb(255, r, g, b);
+    }
+
+    public static int argb(int a, int r, int g, int b) {
+        return ((a & 0xFF) << 24) | ((r & 0xFF) << 16) | ((g & 0xFF) << 8) | (b & 0xFF);
+    }
+
+    public static int alpha(int argb) {
+        return (argb >>> 24) & 0xFF;
+    }
+
+    public static int red(int argb) {
+        return (argb >> 16) & 0xFF;
+    }
+
+    public static int green(int argb) {
+        return (argb >> 8) & 0xFF;
+    }
+
+    public static int blue(int argb) {
+        return argb & 0xFF;
+    }
+
+    /**
+     * Same as {@link java.awt.Color#darker()}.
+     */
+    public static int darker(int argb) {
+        return argb(alpha(argb),
+                (int) (red(argb) * DARKER_FACTOR),
+                (int) (green(argb) * DARKER_FACTOR),
+                (int) (blue(argb) * DARKER_FACTOR));
+    }
+}
@@ -19,20 +19,95 @@ public class Geometry {
     public static boolean lineIntersectCondition(float[] coefs) {
         if (coefs == null)
             return false;
-        float t1 = coefs[0], t2 = coefs[1];
+        return lineIntersectCondition(coefs[0], coefs[1]);
+    }
+
+    public static boolean lineIntersectCondition(float t1, float t2) {
         float eps = 1e-3f;
         return (eps < t1 && t1 < 1 - eps) || (eps < t2 && t2 < 1 - eps);
     }
 
+    /**
+     * Allocation-free equivalent of combining {@link #circleIntersectLineCoefficients}
+     * with {@link #lineIntersectCondition(float[])}.
+     * @return the midpoint of the two line coefficients at which the line x + t * dir crosses
+     * the circle of radius r about the origin, or NaN if the segment does not intersect the circle.
+     */
+    public static float circleIntersectLineMidpoint(float dirX, float dirY, float xX, float xY, float r) {
+        float a = dirX*dirX + dirY*dirY;
+        float b = -2*(dirX*xX + dirY*xY);
+        float c = xX*xX + xY*xY - r*r;
+        float disc = b*b - 4*a*c;
+        if (disc < 0)
+            return Float.NaN;
+
+        float t1 = (float) ((-b + Math.sqrt(disc)) / (2*a));
+        float t2 = (float) ((-b - Math.sqrt(disc)) / (2*a));
+        if (!lineIntersectCondition(t1, t2))
+            return Float.NaN;
+        return (t1 + t2) / 2f;
+    }
+
     public static boolean doesLineIntersectCircle(Vector2[] line, Vector2 circlePos, float circleR) {
-        Vector2 dir = line[1].sub(line[0]);
-        Vector2 x = circlePos.sub(line[0]);
-        float[] intersectionCoefs = circleIntersectLineCoefficients(dir, x, circleR);
-        return lineIntersectCondition(intersectionCoefs);
+        return doesLineIntersectCircle(
+                line[0].getX(), line[0].getY(), line[1].getX(), line[1].getY(),
+                circlePos.getX(), circlePos.getY(), circleR);
+    }
+
+    public static boolean doesLineIntersectCircle(float x1, float y1, float x2, float y2,
+                                                  float circleX, float circleY, float circleR) {
+        float t = circleIntersectLineMidpoint(x2 - x1, y2 - y1, circleX - x1, circleY - y1, circleR);
+        return !Float.isNaN(t);
+    }
+
+    /**
+     * Allocation-free counterpart of {@link protoevo.core.Particle#rayCollisions}.
+     * @return the squared distance from the start of the ray to the closest of the
+     * points at which the ray crosses the circle, or Float.MAX_VALUE if there is no collision.
+     */
+    public static float rayCircleCollisionSqLen(float startX, float startY, float endX, float endY,
+                                                float circleX, float circleY, float r) {
+        float rayX = endX - startX;
+        float rayY = endY - startY;
+        float rayLen = (float) Math.sqrt(rayX*rayX + rayY*rayY);
+        if (rayLen == 0) {
+            rayX = 0;
+            rayY = 0;
+        } else {
+            rayX /= rayLen;
+            rayY /= rayLen;
+        }
+        float pX = circleX - startX;
+        float pY = circleY - startY;
+
+        float a = rayX*rayX + rayY*rayY;
+        float b = -2 * (rayX*pX + rayY*pY);
+        float c = pX*pX + pY*pY - r*r;
+
+        float d = b*b - 4*a*c;
+        if (d == 0)
+            return Float.MAX_VALUE;
+
+        float l1 = (float) ((-b + Math.sqrt(d)) / (2*a));
+        float l2 = (float) ((-b - Math.sqrt(d)) / (2*a));
+        if (!(l1 > 0 || l2 > 0))
+            return Float.MAX_VALUE;
+
+        float dx1 = (startX + rayX*l1) - startX;
+        float dy1 = (startY + rayY*l1) - startY;
+        float dx2 = (startX + rayX*l2) - startX;
+        float dy2 = (startY + rayY*l2) - startY;
+        return Math.min(dx1*dx1 + dy1*dy1, dx2*dx2 + dy2*dy2);
     }
 
     public static boolean isPointInsideCircle(Vector2 circlePos, float radius, Vector2 p) {
-        return circlePos.sub(p).len2() <= radius * radius;
+        return circlePos.squareDistanceTo(p) <= radius * radius;
+    }
+
+    public static boolean isPointInsideCircle(float circleX, float circleY, float radius, float x, float y) {
+        float dx = x - circleX;
+        float dy = y - circleY;
+        return dx*dx + dy*dy <= radius * radius;
     }
 
     public static float getSphereVolume(float r) {
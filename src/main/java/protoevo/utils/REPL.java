@@ -5,6 +5,8 @@ import java.io.InputStreamReader;
 
 import protoevo.core.Application;
 import protoevo.core.Simulation;
+import protoevo.core.SimulationExecutor;
+import protoevo.core.TickProfiler;
 
 public class REPL implements Runnable
 {
@@ -27,6 +29,20 @@ public class REPL implements Runnable
         simulation.setTimeDilation(d);
     }
 
+    public void setThreads(String[] args) throws Exception
+    {
+        if (args.length == 1) {
+            System.out.println(SimulationExecutor.getParallelism());
+            return;
+        }
+        if (args.length != 2)
+            throw new Exception("This command takes 1 or 2 arguments.");
+
+        int n = Integer.parseInt(args[1]);
+        SimulationExecutor.setParallelism(n);
+        System.out.println("Simulation threads set to " + n + ".");
+    }
+
     @Override
     public void run() {
         System.out.println("Starting REPL...");
@@ -43,7 +59,7 @@ public class REPL implements Runnable
                 switch (cmd)
                 {
                     case "help":
-                        System.out.println("commands - help, quit, stats, settime, gettime");
+                        System.out.println("commands - help, quit, stats, settime, gettime, threads, perf");
                         break;
                     case "quit":
                         simulation.close();
@@ -58,6 +74,12 @@ public class REPL implements Runnable
                     case "gettime":
                         System.out.println(simulation.getTimeDilation());
                         break;
+                    case "threads":
+                        setThreads(args);
+                        break;
+                    case "perf":
+                        System.out.println(TickProfiler.getSummary());
+                        break;
                     case "toggledebug":
                         System.out.println("Toggling debug mode.");
                         simulation.toggleDebug();
@@ -38,6 +38,12 @@ public class Vector2 implements Serializable
 		return this;
 	}
 
+	public Vector2 translate(float dx, float dy) {
+		x += dx;
+		y += dy;
+		return this;
+	}
+
 	public Vector2 scale(float s) {
 		x *= s;
 		y *= s;
@@ -59,6 +65,47 @@ public class Vector2 implements Serializable
 	public float dot(Vector2 b) {
 		return ( getX()*b.getX() + getY()*b.getY() );
 	}
+
+	public float dot(float bx, float by) {
+		return x*bx + y*by;
+	}
+
+	public Vector2 addInto(Vector2 b, Vector2 out) {
+		out.set(x + b.getX(), y + b.getY());
+		return out;
+	}
+
+	public Vector2 subInto(Vector2 b, Vector2 out) {
+		out.set(x - b.getX(), y - b.getY());
+		return out;
+	}
+
+	public Vector2 mulInto(float s, Vector2 out) {
+		out.set(s*x, s*y);
+		return out;
+	}
+
+	public Vector2 rotateInto(float angle, Vector2 out) {
+		return rotateInto((float) Math.cos(angle), (float) Math.sin(angle), out);
+	}
+
+	/**
+	 * Rotates by the angle with the given cosine and sine, so that
+	 * callers rotating many vectors by the same angle only pay for the trig once.
+	 */
+	public Vector2 rotateInto(float c, float s, Vector2 out) {
+		out.set(x*c - y*s, x*s + y*c);
+		return out;
+	}
+
+	public Vector2 unitInto(Vector2 out) {
+		float len = len();
+		if (len == 0)
+			out.set(0, 0);
+		else
+			out.set(x / len, y / len);
+		return out;
+	}
 	
 	public Vector2 perp() {
 		return new Vector2(-getY(), getX());
@@ -0,0 +1,44 @@
+package protoevo.biology;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import protoevo.core.ChunkManager;
+import protoevo.core.Settings;
+import protoevo.core.Simulation;
+import protoevo.core.SimulationRandom;
+import protoevo.env.Tank;
+import protoevo.utils.Vector2;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class PlantCellTest {
+
+    @BeforeAll
+    public static void seedRandom() {
+        Simulation.RANDOM = new SimulationRandom(42);
+    }
+
+    @Test
+    public void nearbyPlantsAttractEachOther() {
+        Tank tank = new Tank();
+        float radius = Settings.minPlantBirthRadius;
+        PlantCell left = new PlantCell(radius, tank);
+        PlantCell right = new PlantCell(radius, tank);
+        // apart, so they do not collide, but within each other's attraction range
+        left.setPos(new Vector2(-1.5f * radius, 0));
+        right.setPos(new Vector2(1.5f * radius, 0));
+
+        ChunkManager chunkManager = tank.getChunkManager();
+        chunkManager.add(left);
+        chunkManager.add(right);
+        chunkManager.update();
+
+        left.resetPhysics();
+        right.resetPhysics();
+        left.physicsUpdate(Settings.simulationUpdateDelta);
+        right.physicsUpdate(Settings.simulationUpdateDelta);
+
+        assertTrue(left.getPos().getX() > -1.5f * radius, "left plant should move right");
+        assertTrue(right.getPos().getX() < 1.5f * radius, "right plant should move left");
+    }
+}
@@ -0,0 +1,95 @@
+package protoevo.biology;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import protoevo.biology.genes.Gene;
+import protoevo.biology.genes.ProtozoaGenome;
+import protoevo.biology.genes.RetinaSizeGene;
+import protoevo.core.Collidable;
+import protoevo.core.Settings;
+import protoevo.core.Simulation;
+import protoevo.core.SimulationRandom;
+import protoevo.env.Rock;
+import protoevo.env.Tank;
+import protoevo.utils.Vector2;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ProtozoanVisionTest {
+
+    @BeforeAll
+    public static void seedRandom() {
+        Simulation.RANDOM = new SimulationRandom(42);
+    }
+
+    private static Protozoan protozoanWithRetina(Tank tank, int retinaSize) throws MiscarriageException {
+        Gene<?>[] genes = new ProtozoaGenome().getGenes();
+        for (int i = 0; i < genes.length; i++)
+            if (genes[i] instanceof RetinaSizeGene)
+                genes[i] = new RetinaSizeGene(retinaSize);
+        return new Protozoan(new ProtozoaGenome(genes), tank);
+    }
+
+    private static List<Collidable> sceneAround(Protozoan protozoan, Tank tank) {
+        List<Collidable> scene = new ArrayList<>();
+        float range = protozoan.getInteractRange();
+        for (int i = 0; i < 40; i++) {
+            double angle = 2 * Math.PI * Simulation.RANDOM.nextDouble();
+            float dist = (float) (range * (0.1 + 0.9 * Simulation.RANDOM.nextDouble()));
+            Vector2 pos = protozoan.getPos().add(Vector2.fromAngle((float) angle).setLength(dist));
+            if (i % 4 == 3) {
+                float size = 0.2f * dist;
+                scene.add(new Rock(
+                        pos.add(new Vector2(size, 0)),
+                        pos.add(new Vector2(-size / 2, size)),
+                        pos.add(new Vector2(-size / 2, -size))));
+            } else {
+                PlantCell plant = new PlantCell(tank);
+                plant.setPos(pos);
+                scene.add(plant);
+            }
+        }
+        return scene;
+    }
+
+    private static float[] seen(Protozoan protozoan, List<Collidable> scene, boolean angularSweep) {
+        Retina retina = protozoan.getRetina();
+        retina.reset();
+        for (Collidable o : scene)
+            protozoan.see(o, angularSweep);
+
+        List<Float> seen = new ArrayList<>();
+        for (Retina.Cell cell : retina) {
+            for (int i = 0; i < cell.getRays().length; i++)
+                seen.add(cell.collisionSqLen(i));
+            seen.add((float) cell.getColour());
+        }
+        float[] result = new float[seen.size()];
+        for (int i = 0; i < result.length; i++)
+            result[i] = seen.get(i);
+        return result;
+    }
+
+    @Test
+    public void angularSweepSeesTheSameAsCastingEveryRay() throws MiscarriageException {
+        Tank tank = new Tank();
+        Protozoan protozoan = protozoanWithRetina(tank, Settings.maxRetinaSize);
+        protozoan.setPos(new Vector2(0, 0));
+        assertTrue(protozoan.getRetina().numberOfCells() > 0);
+
+        boolean anythingSeen = false;
+        for (int trial = 0; trial < 20; trial++) {
+            List<Collidable> scene = sceneAround(protozoan, tank);
+            float[] expected = seen(protozoan, scene, false);
+            float[] actual = seen(protozoan, scene, true);
+            assertArrayEquals(expected, actual, "trial " + trial);
+            anythingSeen |= protozoan.getRetina().getCell(0).anythingVisible();
+            protozoan.getDir().turn(1f);
+        }
+        assertTrue(anythingSeen);
+    }
+}
@@ -0,0 +1,50 @@
+package protoevo.biology;
+
+import org.junit.jupiter.api.Test;
+import protoevo.utils.Vector2;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class RetinaTest {
+
+    private static void assertOrientedLike(Retina retina, Vector2 dir, float length) {
+        float angle = dir.angle();
+        for (Retina.Cell cell : retina) {
+            for (int i = 0; i < cell.getRays().length; i++) {
+                Vector2 expected = cell.getRays()[i].rotate(angle).setLength(length);
+                assertEquals(expected.getX(), cell.getOrientedRayX(i), "ray " + i + " x");
+                assertEquals(expected.getY(), cell.getOrientedRayY(i), "ray " + i + " y");
+            }
+        }
+    }
+
+    @Test
+    public void orientedRaysMatchRotatingEachRay() {
+        Retina retina = new Retina(8, (float) Math.toRadians(120));
+        Vector2 dir = new Vector2(0.1f, 0);
+        for (int turn = 0; turn < 20; turn++) {
+            float length = 0.05f + 0.01f * turn;
+            retina.orient(dir, length);
+            assertOrientedLike(retina, dir, length);
+            dir.turn(0.7f);
+        }
+    }
+
+    @Test
+    public void orientedRaysFollowTurnsAndLengthChanges() {
+        Retina retina = new Retina(4, (float) Math.toRadians(90));
+        Vector2 dir = new Vector2(0, 0.1f);
+        retina.orient(dir, 0.2f);
+        retina.orient(dir, 0.2f);
+        assertOrientedLike(retina, dir, 0.2f);
+
+        retina.orient(dir, 0.3f);
+        assertOrientedLike(retina, dir, 0.3f);
+
+        // the cache is keyed on the heading's components, so turning the same vector in place
+        // must still recompute the rays
+        dir.turn(1.3f);
+        retina.orient(dir, 0.3f);
+        assertOrientedLike(retina, dir, 0.3f);
+    }
+}
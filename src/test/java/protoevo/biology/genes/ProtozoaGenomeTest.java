@@ -0,0 +1,37 @@
+package protoevo.biology.genes;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import protoevo.core.Simulation;
+import protoevo.core.SimulationRandom;
+import protoevo.neat.NetworkGenome;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ProtozoaGenomeTest {
+
+    @BeforeAll
+    public static void seedRandom() {
+        Simulation.RANDOM = new SimulationRandom(42);
+    }
+
+    @Test
+    public void addingRetinaSensorsLeavesTheSharedNetworkUnchanged() {
+        ProtozoaGenome parent = new ProtozoaGenome();
+        NetworkGenome shared = parent.getGeneValue(NetworkGene.class);
+        int sensors = shared.numberOfSensors();
+
+        // a larger retina than the shared network has sensors for, as after a crossover
+        Gene<?>[] genes = parent.getGenes();
+        int retinaSize = parent.getGeneValue(RetinaSizeGene.class) + 1;
+        genes[ProtozoaGenome.RETINA_SIZE] = ((RetinaSizeGene) genes[ProtozoaGenome.RETINA_SIZE]).createNew(retinaSize);
+        ProtozoaGenome child = new ProtozoaGenome(genes);
+
+        assertEquals(sensors, shared.numberOfSensors());
+        assertSame(shared, parent.getGeneValue(NetworkGene.class));
+        assertTrue(child.getGeneValue(NetworkGene.class).hasRetinaSensors(retinaSize));
+        assertSame(parent, parent.ensureCorrectness());
+    }
+}
@@ -0,0 +1,84 @@
+package protoevo.core;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Assumptions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import protoevo.biology.Cell;
+import protoevo.biology.PlantCell;
+import protoevo.env.Tank;
+import protoevo.utils.Vector2;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class ChunkManagerTest {
+
+    private static int parallelism;
+
+    @BeforeAll
+    public static void seedRandom() {
+        Simulation.RANDOM = new SimulationRandom(42);
+        // several workers, so that the counting sort is split into blocks
+        parallelism = SimulationExecutor.getParallelism();
+        SimulationExecutor.setParallelism(4);
+    }
+
+    @AfterAll
+    public static void restoreParallelism() {
+        SimulationExecutor.setParallelism(parallelism);
+    }
+
+    private static Vector2 randomPoint(float radius) {
+        return new Vector2(
+                radius * (2 * Simulation.RANDOM.nextFloat() - 1),
+                radius * (2 * Simulation.RANDOM.nextFloat() - 1));
+    }
+
+    /**
+     * What the chunks' cell lists held when the hash was rebuilt by allocating each cell in turn.
+     */
+    private static List<List<Cell>> allocatedInTurn(ChunkManager chunkManager) {
+        List<List<Cell>> chunkCells = new ArrayList<>();
+        for (int id = 0; id < chunkManager.getChunks().length; id++)
+            chunkCells.add(new ArrayList<>());
+        for (Cell cell : chunkManager.getAllCells())
+            chunkCells.get(chunkManager.toChunkID(cell.getPosX(), cell.getPosY())).add(cell);
+        return chunkCells;
+    }
+
+    private static void assertSortedLike(List<List<Cell>> expected, ChunkManager chunkManager) {
+        for (int id = 0; id < expected.size(); id++)
+            assertEquals(expected.get(id), chunkManager.getChunkCells(id), "chunk " + id);
+    }
+
+    @Test
+    public void countingSortMatchesAllocatingEachCell() {
+        Assumptions.assumeTrue(Settings.useCountingSortSpatialHash);
+        Tank tank = new Tank();
+        ChunkManager chunkManager = tank.getChunkManager();
+        float radius = 0.9f * tank.getRadius();
+        List<Cell> cells = new ArrayList<>();
+        for (int i = 0; i < 6000; i++) {
+            PlantCell plant = new PlantCell(tank);
+            plant.setPos(randomPoint(radius));
+            chunkManager.add(plant);
+            cells.add(plant);
+        }
+        chunkManager.update();
+        assertSortedLike(allocatedInTurn(chunkManager), chunkManager);
+
+        // rebuilt into the same buffers after cells move and die
+        for (int i = 0; i < cells.size(); i++) {
+            if (i % 3 == 0)
+                cells.get(i).setPos(randomPoint(radius));
+            else if (i % 3 == 1)
+                cells.get(i).killCell();
+        }
+        chunkManager.update();
+        assertEquals(cells.size() - cells.size() / 3, chunkManager.getAllCells().size());
+        assertSortedLike(allocatedInTurn(chunkManager), chunkManager);
+    }
+}
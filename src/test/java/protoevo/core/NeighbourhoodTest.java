@@ -0,0 +1,101 @@
+package protoevo.core;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import protoevo.biology.PlantCell;
+import protoevo.env.Rock;
+import protoevo.env.Tank;
+import protoevo.utils.Vector2;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class NeighbourhoodTest {
+
+    @BeforeAll
+    public static void seedRandom() {
+        Simulation.RANDOM = new SimulationRandom(42);
+    }
+
+    private static float uniform(float min, float max) {
+        return min + (max - min) * Simulation.RANDOM.nextFloat();
+    }
+
+    private static Vector2 randomPoint(float radius) {
+        return new Vector2(uniform(-radius, radius), uniform(-radius, radius));
+    }
+
+    private static Tank seededTank() {
+        Tank tank = new Tank();
+        ChunkManager chunkManager = tank.getChunkManager();
+        float radius = 0.9f * tank.getRadius();
+        for (int i = 0; i < 500; i++) {
+            PlantCell plant = new PlantCell(tank);
+            plant.setPos(randomPoint(radius));
+            chunkManager.add(plant);
+        }
+        for (int i = 0; i < 20; i++) {
+            Vector2 p = randomPoint(radius);
+            float size = uniform(0.01f, 0.05f) * tank.getRadius();
+            chunkManager.allocateToChunk(new Rock(
+                    p, p.add(new Vector2(size, 0)), p.add(new Vector2(0, size))));
+        }
+        chunkManager.update();
+        return tank;
+    }
+
+    @Test
+    public void coveredQueriesMatchTheChunkManager() {
+        Tank tank = seededTank();
+        ChunkManager chunkManager = tank.getChunkManager();
+        Neighbourhood neighbourhood = new Neighbourhood();
+        float tankRadius = tank.getRadius();
+
+        int nonEmpty = 0;
+        for (int scan = 0; scan < 50; scan++) {
+            Vector2 centre = randomPoint(0.9f * tankRadius);
+            float scanRange = uniform(0.05f, 0.3f) * tankRadius;
+            neighbourhood.build(chunkManager, centre.getX(), centre.getY(), scanRange);
+
+            for (int query = 0; query < 10; query++) {
+                float offset = uniform(0, 0.5f) * scanRange;
+                Vector2 queryCentre = centre.add(
+                        Vector2.fromAngle(uniform(0, (float) (2 * Math.PI))).setLength(offset));
+                float range = uniform(0, 0.95f) * (scanRange - offset);
+                assertTrue(neighbourhood.covers(queryCentre.getX(), queryCentre.getY(), range));
+
+                List<Collidable> expected = new ArrayList<>();
+                chunkManager.forEachInRange(queryCentre.getX(), queryCentre.getY(), range, expected::add);
+                List<Collidable> actual = new ArrayList<>();
+                neighbourhood.forEachInRange(queryCentre.getX(), queryCentre.getY(), range, actual::add);
+                assertEquals(expected, actual, "scan " + scan + ", query " + query);
+                if (!expected.isEmpty())
+                    nonEmpty++;
+            }
+        }
+        assertTrue(nonEmpty > 0);
+    }
+
+    @Test
+    public void queriesOutsideTheScanAreNotCovered() {
+        Tank tank = seededTank();
+        ChunkManager chunkManager = tank.getChunkManager();
+        Neighbourhood neighbourhood = new Neighbourhood();
+        float range = 0.1f * tank.getRadius();
+        neighbourhood.build(chunkManager, 0, 0, range);
+
+        assertFalse(neighbourhood.covers(0, 0, 1.01f * range));
+        assertFalse(neighbourhood.covers(0.5f * range, 0, 0.6f * range));
+        assertTrue(neighbourhood.covers(0.5f * range, 0, 0.4f * range));
+
+        chunkManager.advanceNeighbourListGeneration();
+        assertTrue(neighbourhood.covers(0, 0, 0.5f * range));
+        chunkManager.requestNeighbourListRebuild();
+        chunkManager.advanceNeighbourListGeneration();
+        assertFalse(neighbourhood.covers(0, 0, 0.5f * range));
+    }
+}
@@ -0,0 +1,78 @@
+package protoevo.env;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import protoevo.biology.Cell;
+import protoevo.biology.MiscarriageException;
+import protoevo.biology.PlantCell;
+import protoevo.biology.Protozoan;
+import protoevo.core.Settings;
+import protoevo.core.Simulation;
+import protoevo.core.SimulationExecutor;
+import protoevo.core.SimulationRandom;
+import protoevo.utils.Vector2;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class TankTest {
+
+    @BeforeAll
+    public static void singleThreaded() {
+        // one worker, so that nothing depends on how the work is scheduled
+        SimulationExecutor.setParallelism(1);
+    }
+
+    private static Tank spacedOutTank() throws MiscarriageException {
+        // cells far enough apart that none interacts or collides with another, since the
+        // passes visit the cells in different orders and the order of those is not fixed
+        Simulation.RANDOM = new SimulationRandom(42);
+        Tank tank = new Tank();
+        tank.cellCapacities.put(Protozoan.class, Settings.maxProtozoa);
+        tank.cellCapacities.put(PlantCell.class, Settings.maxPlants);
+        int n = 8;
+        for (int i = 0; i < n; i++) {
+            double angle = 2 * Math.PI * i / n;
+            Cell cell = i % 2 == 0 ? new PlantCell(tank) : new Protozoan(tank);
+            cell.setPos(new Vector2(
+                    (float) (0.5f * tank.getRadius() * Math.cos(angle)),
+                    (float) (0.5f * tank.getRadius() * Math.sin(angle))));
+            tank.add(cell);
+        }
+        return tank;
+    }
+
+    private static List<float[]> state(Tank tank) {
+        // the passes may leave the cells in a different order, so compare them by key
+        List<Cell> cells = new ArrayList<>(tank.getEntities());
+        cells.sort(Comparator.comparingLong(Cell::getRandomKey));
+        List<float[]> state = new ArrayList<>();
+        for (Cell cell : cells)
+            state.add(new float[]{
+                    cell.getPos().getX(), cell.getPos().getY(),
+                    cell.getVel().getX(), cell.getVel().getY(),
+                    cell.getHealth(), cell.getRadius()
+            });
+        return state;
+    }
+
+    @Test
+    public void fusedTicksMatchPhasedTicks() throws MiscarriageException {
+        Tank phased = spacedOutTank();
+        Tank fused = spacedOutTank();
+        for (int tick = 0; tick < 10; tick++) {
+            phased.update(Settings.simulationUpdateDelta, false);
+            fused.update(Settings.simulationUpdateDelta, true);
+        }
+
+        List<float[]> expected = state(phased);
+        List<float[]> actual = state(fused);
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++)
+            assertArrayEquals(expected.get(i), actual.get(i), "cell " + i);
+    }
+}
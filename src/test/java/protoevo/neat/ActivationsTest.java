@@ -0,0 +1,93 @@
+package protoevo.neat;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.Base64;
+import java.util.function.DoubleUnaryOperator;
+
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ActivationsTest {
+
+    // Activation.SIGMOID, LINEAR and TANH as saved when they were serializable lambdas
+    private static final String LAMBDA_PREFIX =
+            "rO0ABXNyACFqYXZhLmxhbmcuaW52b2tlLlNlcmlhbGl6ZWRMYW1iZGFvYdCULCk2hQIACkkADmltcGxNZXRob2RLaW5kWwAM"
+            + "Y2FwdHVyZWRBcmdzdAATW0xqYXZhL2xhbmcvT2JqZWN0O0wADmNhcHR1cmluZ0NsYXNzdAARTGphdmEvbGFuZy9DbGFzcztM"
+            + "ABhmdW5jdGlvbmFsSW50ZXJmYWNlQ2xhc3N0ABJMamF2YS9sYW5nL1N0cmluZztMAB1mdW5jdGlvbmFsSW50ZXJmYWNlTWV0"
+            + "aG9kTmFtZXEAfgADTAAiZnVuY3Rpb25hbEludGVyZmFjZU1ldGhvZFNpZ25hdHVyZXEAfgADTAAJaW1wbENsYXNzcQB+AANM"
+            + "AA5pbXBsTWV0aG9kTmFtZXEAfgADTAATaW1wbE1ldGhvZFNpZ25hdHVyZXEAfgADTAAWaW5zdGFudGlhdGVkTWV0aG9kVHlw"
+            + "ZXEAfgADeHAAAAAGdXIAE1tMamF2YS5sYW5nLk9iamVjdDuQzlifEHMpbAIAAHhwAAAAAHZyAB9wcm90b2V2by5uZWF0Lk5l"
+            + "dXJvbiRBY3RpdmF0aW9uGnqxdQ+7AesCAAB4cHQAH3Byb3RvZXZvL25lYXQvTmV1cm9uJEFjdGl2YXRpb250AAVhcHBseXQA"
+            + "JihMamF2YS9sYW5nL09iamVjdDspTGphdmEvbGFuZy9PYmplY3Q7cQB+AAl0";
+    private static final String SIGMOID_LAMBDA = LAMBDA_PREFIX
+            + "ABhsYW1iZGEkc3RhdGljJDFjNmRlY2E2JDF0ACQoTGphdmEvbGFuZy9GbG9hdDspTGphdmEvbGFuZy9GbG9hdDtxAH4ADQ==";
+    private static final String LINEAR_LAMBDA = LAMBDA_PREFIX
+            + "ABhsYW1iZGEkc3RhdGljJDVkNzE5MWMxJDF0ACQoTGphdmEvbGFuZy9GbG9hdDspTGphdmEvbGFuZy9GbG9hdDtxAH4ADQ==";
+    private static final String TANH_LAMBDA = LAMBDA_PREFIX
+            + "ABdsYW1iZGEkc3RhdGljJDJhNzhlN2YkMXQAJChMamF2YS9sYW5nL0Zsb2F0OylMamF2YS9sYW5nL0Zsb2F0O3EAfgAN";
+
+    private static Object deserialize(byte[] bytes) throws IOException, ClassNotFoundException {
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes))) {
+            return in.readObject();
+        }
+    }
+
+    private static byte[] serialize(Object o) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(o);
+        }
+        return bytes.toByteArray();
+    }
+
+    @Test
+    public void savedLambdasResolveToTheActivations() throws Exception {
+        assertSame(Neuron.Activation.SIGMOID, deserialize(Base64.getDecoder().decode(SIGMOID_LAMBDA)));
+        assertSame(Neuron.Activation.LINEAR, deserialize(Base64.getDecoder().decode(LINEAR_LAMBDA)));
+        assertSame(Neuron.Activation.TANH, deserialize(Base64.getDecoder().decode(TANH_LAMBDA)));
+    }
+
+    @Test
+    public void activationsKeepTheirIdentityWhenSaved() throws Exception {
+        for (Neuron.Activation activation : new Neuron.Activation[]{
+                Neuron.Activation.SIGMOID, Neuron.Activation.LINEAR, Neuron.Activation.TANH})
+            assertSame(activation, deserialize(serialize(activation)));
+    }
+
+    private static double maxError(DoubleUnaryOperator approximation, DoubleUnaryOperator exact) {
+        double maxError = 0;
+        for (int i = -200000; i <= 200000; i++) {
+            double z = i * 1e-4;
+            maxError = Math.max(maxError, Math.abs(approximation.applyAsDouble(z) - exact.applyAsDouble(z)));
+        }
+        return maxError;
+    }
+
+    private static double sigmoid(double z) {
+        return 1 / (1 + Math.exp(-z));
+    }
+
+    @Test
+    public void rationalApproximationIsWithinItsBounds() {
+        double tanhError = maxError(z -> Activations.rationalTanh((float) z), Math::tanh);
+        double sigmoidError = maxError(
+                z -> 0.5f + 0.5f * Activations.rationalTanh(0.5f * (float) z), ActivationsTest::sigmoid);
+        assertTrue(tanhError < 1e-4, "tanh error " + tanhError);
+        assertTrue(sigmoidError < 5e-5, "sigmoid error " + sigmoidError);
+    }
+
+    @Test
+    public void lookupTableIsWithinItsBounds() {
+        double tanhError = maxError(z -> Activations.tableTanh((float) z), Math::tanh);
+        double sigmoidError = maxError(
+                z -> 0.5f + 0.5f * Activations.tableTanh(0.5f * (float) z), ActivationsTest::sigmoid);
+        assertTrue(tanhError < 1e-5, "tanh error " + tanhError);
+        assertTrue(sigmoidError < 5e-6, "sigmoid error " + sigmoidError);
+    }
+}
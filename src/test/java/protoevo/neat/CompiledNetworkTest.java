@@ -0,0 +1,84 @@
+package protoevo.neat;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import protoevo.core.Simulation;
+import protoevo.core.SimulationRandom;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class CompiledNetworkTest {
+
+    @BeforeAll
+    public static void seedRandom() {
+        Simulation.RANDOM = new SimulationRandom(42);
+    }
+
+    private static NetworkGenome mutatedGenome(int nMutations) {
+        NetworkGenome genome = new NetworkGenome(6, 3);
+        for (int i = 0; i < nMutations; i++)
+            genome.mutate();
+        return genome;
+    }
+
+    private static float[] randomInputs(int n) {
+        float[] inputs = new float[n];
+        for (int i = 0; i < n; i++)
+            inputs[i] = 2 * Simulation.RANDOM.nextFloat() - 1;
+        return inputs;
+    }
+
+    @Test
+    public void compiledNetworksMatchTheObjectGraph() {
+        boolean anyHidden = false;
+        for (int trial = 0; trial < 20; trial++) {
+            NetworkGenome genome = mutatedGenome(5 * trial);
+            NeuralNetwork graph = genome.graphPhenotype();
+            NeuralNetwork compiled = new NeuralNetwork(genome.compile());
+            assertEquals(graph.getInputSize(), compiled.getInputSize());
+            assertEquals(graph.getSize(), compiled.getSize());
+            assertEquals(graph.getDepth(), compiled.getDepth());
+            anyHidden |= graph.getSize() > 9;
+
+            for (int tick = 0; tick < 20; tick++) {
+                float[] inputs = randomInputs(graph.getInputSize());
+                graph.setInput(inputs);
+                compiled.setInput(inputs);
+                graph.tick();
+                compiled.tick();
+                assertArrayEquals(graph.outputs(), compiled.outputs(),
+                        "genome " + trial + ", tick " + tick);
+            }
+        }
+        assertTrue(anyHidden);
+    }
+
+    @Test
+    public void compiledNeuronsMatchTheObjectGraph() {
+        NetworkGenome genome = mutatedGenome(40);
+        NeuralNetwork graph = genome.graphPhenotype();
+        NeuralNetwork compiled = new NeuralNetwork(genome.compile());
+        for (int tick = 0; tick < 5; tick++) {
+            float[] inputs = randomInputs(graph.getInputSize());
+            graph.setInput(inputs);
+            compiled.setInput(inputs);
+            graph.tick();
+            compiled.tick();
+        }
+
+        Neuron[] expected = graph.getNeurons();
+        Neuron[] actual = compiled.getNeurons();
+        for (Neuron neuron : expected) {
+            Neuron other = actual[neuron.getId()];
+            assertEquals(neuron.getType(), other.getType());
+            assertEquals(neuron.getState(), other.getState(), "neuron " + neuron.getId());
+            assertEquals(neuron.getInputs().length, other.getInputs().length);
+            for (int i = 0; i < neuron.getInputs().length; i++) {
+                assertEquals(neuron.getInputs()[i].getId(), other.getInputs()[i].getId());
+                assertEquals(neuron.getWeights()[i], other.getWeights()[i]);
+            }
+        }
+    }
+}
@@ -0,0 +1,210 @@
+package protoevo.neat;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import protoevo.core.Settings;
+import protoevo.core.Simulation;
+import protoevo.core.SimulationRandom;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class NetworkGenomeTest {
+
+    @BeforeAll
+    public static void seedRandom() {
+        Simulation.RANDOM = new SimulationRandom(42);
+    }
+
+    @Test
+    public void innovationsFromParallelUpdatesAreNumberedInOrder() {
+        NetworkGenome genome = new NetworkGenome(3, 2);
+        int lastNumbered = genome.getSynapseGenes()[genome.getSynapseGenes().length - 1].getInnovation();
+
+        SimulationRandom.enter(1, 0, 0);
+        try {
+            genome.addSensor("Extra 0");
+            genome.addSensor("Extra 1");
+        } finally {
+            SimulationRandom.exit();
+        }
+        SynapseGene[] genes = genome.getSynapseGenes();
+        for (int i = genes.length - 4; i < genes.length; i++)
+            assertEquals(SynapseGene.PROVISIONAL_INNOVATION, genes[i].getInnovation());
+
+        genome.assignInnovations();
+        for (int i = 1; i < genes.length; i++)
+            assertTrue(genes[i - 1].getInnovation() < genes[i].getInnovation());
+        assertTrue(genes[genes.length - 4].getInnovation() > lastNumbered);
+    }
+
+    /**
+     * The merge crossover used to do with maps keyed by innovation, visiting the innovations
+     * in increasing order so that it draws from the random numbers in the same order.
+     */
+    private static NetworkGenome referenceCrossover(NetworkGenome a, NetworkGenome b) {
+        Map<Integer, SynapseGene> mine = new TreeMap<>();
+        for (SynapseGene g : a.getSynapseGenes())
+            mine.put(g.getInnovation(), g);
+        Map<Integer, SynapseGene> theirs = new TreeMap<>();
+        for (SynapseGene g : b.getSynapseGenes())
+            theirs.put(g.getInnovation(), g);
+        Set<Integer> innovations = new TreeSet<>(mine.keySet());
+        innovations.addAll(theirs.keySet());
+
+        List<SynapseGene> childSynapses = new ArrayList<>();
+        for (int innovation : innovations) {
+            SynapseGene g;
+            if (mine.containsKey(innovation) && theirs.containsKey(innovation)) {
+                g = Simulation.RANDOM.nextBoolean() ? mine.get(innovation) : theirs.get(innovation);
+                if (g.isDisabled() && Simulation.RANDOM.nextFloat() < Settings.globalMutationChance)
+                    g = g.copy(false);
+                childSynapses.add(g);
+                continue;
+            }
+            g = mine.containsKey(innovation) ? mine.get(innovation) : theirs.get(innovation);
+            if (g.getIn().getType().equals(Neuron.Type.SENSOR) || Simulation.RANDOM.nextBoolean())
+                childSynapses.add(g);
+        }
+
+        Set<NeuronGene> neuronGenes = new TreeSet<>(Comparator.comparingInt(NeuronGene::getId));
+        for (SynapseGene g : childSynapses) {
+            neuronGenes.add(g.getIn());
+            neuronGenes.add(g.getOut());
+        }
+        return new NetworkGenome(
+                neuronGenes.stream().filter(n -> n.getType() == Neuron.Type.SENSOR).toArray(NeuronGene[]::new),
+                neuronGenes.stream().filter(n -> n.getType() == Neuron.Type.OUTPUT).toArray(NeuronGene[]::new),
+                neuronGenes.stream().filter(n -> n.getType() == Neuron.Type.HIDDEN).toArray(NeuronGene[]::new),
+                childSynapses.toArray(new SynapseGene[0]),
+                Neuron.Activation.TANH
+        );
+    }
+
+    private static int[] innovations(NetworkGenome genome) {
+        SynapseGene[] genes = genome.getSynapseGenes();
+        int[] innovations = new int[genes.length];
+        for (int i = 0; i < genes.length; i++)
+            innovations[i] = genes[i].getInnovation();
+        return innovations;
+    }
+
+    @Test
+    public void crossoverMatchesTheReferenceMerge() {
+        for (int trial = 0; trial < 20; trial++) {
+            NetworkGenome ancestor = new NetworkGenome(5, 3);
+            for (int i = 0; i < 10; i++)
+                ancestor.mutate();
+            NetworkGenome a = new NetworkGenome(ancestor);
+            NetworkGenome b = new NetworkGenome(ancestor);
+            for (int i = 0; i < trial; i++) {
+                a.mutate();
+                b.mutate();
+            }
+            int[] aStructure = a.structure(), bStructure = b.structure();
+
+            Simulation.RANDOM = new SimulationRandom(trial);
+            NetworkGenome expected = referenceCrossover(a, b);
+            Simulation.RANDOM = new SimulationRandom(trial);
+            NetworkGenome actual = a.crossover(b);
+
+            assertArrayEquals(innovations(expected), innovations(actual), "trial " + trial);
+            assertArrayEquals(expected.structure(), actual.structure(), "trial " + trial);
+            assertArrayEquals(expected.activations(), actual.activations(), "trial " + trial);
+            assertArrayEquals(aStructure, a.structure(), "crossover changed a parent");
+            assertArrayEquals(bStructure, b.structure(), "crossover changed a parent");
+        }
+    }
+
+    /**
+     * Every neuron of the genome, wired with all of its enabled synapses, as if nothing
+     * were pruned from the phenotype.
+     */
+    private static NeuralNetwork unprunedNetwork(NetworkGenome genome) {
+        Map<Integer, NeuronGene> neuronGenes = new TreeMap<>();
+        for (SynapseGene g : genome.getSynapseGenes()) {
+            neuronGenes.put(g.getIn().getId(), g.getIn());
+            neuronGenes.put(g.getOut().getId(), g.getOut());
+        }
+        Map<Integer, List<SynapseGene>> inputs = new TreeMap<>();
+        for (SynapseGene g : genome.getSynapseGenes())
+            if (!g.isDisabled() && g.getOut().getType() != Neuron.Type.SENSOR)
+                inputs.computeIfAbsent(g.getOut().getId(), id -> new ArrayList<>()).add(g);
+
+        Map<Integer, Neuron> neurons = new TreeMap<>();
+        for (NeuronGene g : neuronGenes.values()) {
+            int n = inputs.getOrDefault(g.getId(), new ArrayList<>()).size();
+            neurons.put(g.getId(), new Neuron(
+                    g.getId(), new Neuron[n], new float[n], g.getType(), g.getActivation(), g.getLabel()));
+        }
+        for (Map.Entry<Integer, List<SynapseGene>> entry : inputs.entrySet()) {
+            Neuron out = neurons.get(entry.getKey());
+            for (int i = 0; i < entry.getValue().size(); i++) {
+                out.getInputs()[i] = neurons.get(entry.getValue().get(i).getIn().getId());
+                out.getWeights()[i] = entry.getValue().get(i).getWeight();
+            }
+        }
+        return new NeuralNetwork(neurons.values().toArray(new Neuron[0]));
+    }
+
+    private static void assertMatchesUnpruned(NetworkGenome genome) {
+        NeuralNetwork unpruned = unprunedNetwork(genome);
+        NeuralNetwork pruned = genome.graphPhenotype();
+        assertEquals(unpruned.getInputSize(), pruned.getInputSize());
+        for (int tick = 0; tick < 20; tick++) {
+            float[] inputs = new float[unpruned.getInputSize()];
+            for (int i = 0; i < inputs.length; i++)
+                inputs[i] = 2 * Simulation.RANDOM.nextFloat() - 1;
+            unpruned.setInput(inputs);
+            pruned.setInput(inputs);
+            unpruned.tick();
+            pruned.tick();
+            assertArrayEquals(unpruned.outputs(), pruned.outputs(), "tick " + tick);
+        }
+    }
+
+    @Test
+    public void prunedPhenotypesMatchTheUnprunedNetwork() {
+        for (int trial = 0; trial < 20; trial++) {
+            NetworkGenome genome = new NetworkGenome(5, 3);
+            for (int i = 0; i < 5 * trial; i++)
+                genome.mutate();
+            assertMatchesUnpruned(genome);
+        }
+    }
+
+    @Test
+    public void deadHiddenNeuronsArePruned() {
+        NeuronGene s0 = new NeuronGene(0, Neuron.Type.SENSOR, Neuron.Activation.LINEAR);
+        NeuronGene s1 = new NeuronGene(1, Neuron.Type.SENSOR, Neuron.Activation.LINEAR);
+        NeuronGene out = new NeuronGene(2, Neuron.Type.OUTPUT, Neuron.Activation.TANH);
+        NeuronGene dead = new NeuronGene(3, Neuron.Type.HIDDEN, Neuron.Activation.TANH);
+        NeuronGene live = new NeuronGene(4, Neuron.Type.HIDDEN, Neuron.Activation.TANH);
+        SynapseGene[] synapses = {
+                new SynapseGene(s0, out, 0.5f, 0).copy(true),
+                new SynapseGene(s1, out, -0.7f, 1),
+                new SynapseGene(s0, dead, 0.3f, 2),
+                new SynapseGene(dead, out, 0.9f, 3).copy(true),
+                new SynapseGene(s1, live, 1.1f, 4),
+                new SynapseGene(live, out, -0.4f, 5),
+                new SynapseGene(live, live, 0.2f, 6)
+        };
+        NetworkGenome genome = new NetworkGenome(
+                new NeuronGene[]{s0, s1}, new NeuronGene[]{out}, new NeuronGene[]{dead, live},
+                synapses, Neuron.Activation.TANH);
+
+        assertEquals(5, unprunedNetwork(genome).getSize());
+        assertEquals(4, genome.graphPhenotype().getSize());
+        assertEquals(4, genome.compile().getSize());
+        assertMatchesUnpruned(genome);
+    }
+}
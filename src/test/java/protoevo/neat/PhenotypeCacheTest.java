@@ -0,0 +1,57 @@
+package protoevo.neat;
+
+import org.junit.jupiter.api.Assumptions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import protoevo.core.Settings;
+import protoevo.core.Simulation;
+import protoevo.core.SimulationRandom;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+public class PhenotypeCacheTest {
+
+    @BeforeAll
+    public static void seedRandom() {
+        Simulation.RANDOM = new SimulationRandom(42);
+    }
+
+    private static NetworkGenome mutatedGenome() {
+        NetworkGenome genome = new NetworkGenome(4, 2);
+        for (int i = 0; i < 15; i++)
+            genome.mutate();
+        return genome;
+    }
+
+    @Test
+    public void copiesShareTheCompiledNetwork() {
+        Assumptions.assumeTrue(Settings.phenotypeCacheSize > 0);
+        NetworkGenome genome = mutatedGenome();
+        NetworkGenome copy = new NetworkGenome(genome);
+        assertSame(PhenotypeCache.get(genome), PhenotypeCache.get(copy));
+
+        copy.mutate();
+        assertNotSame(PhenotypeCache.get(genome), PhenotypeCache.get(copy));
+    }
+
+    @Test
+    public void cachedNetworksMatchAFreshCompile() {
+        for (int trial = 0; trial < 10; trial++) {
+            NetworkGenome genome = mutatedGenome();
+            NeuralNetwork cached = new NeuralNetwork(PhenotypeCache.get(new NetworkGenome(genome)));
+            NeuralNetwork fresh = new NeuralNetwork(genome.compile());
+            for (int tick = 0; tick < 10; tick++) {
+                float[] inputs = new float[fresh.getInputSize()];
+                for (int i = 0; i < inputs.length; i++)
+                    inputs[i] = 2 * Simulation.RANDOM.nextFloat() - 1;
+                cached.setInput(inputs);
+                fresh.setInput(inputs);
+                cached.tick();
+                fresh.tick();
+                assertArrayEquals(fresh.outputs(), cached.outputs(), "genome " + trial + ", tick " + tick);
+            }
+        }
+    }
+}
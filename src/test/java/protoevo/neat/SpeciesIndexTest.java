@@ -0,0 +1,37 @@
+package protoevo.neat;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import protoevo.core.Settings;
+import protoevo.core.Simulation;
+import protoevo.core.SimulationRandom;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+
+public class SpeciesIndexTest {
+
+    @BeforeAll
+    public static void seedRandom() {
+        Simulation.RANDOM = new SimulationRandom(42);
+    }
+
+    @Test
+    public void unrelatedGenomesFoundDifferentSpecies() {
+        // the size of a protozoan's network before it grows a retina
+        NetworkGenome a = new NetworkGenome(7, 4);
+        NetworkGenome b = new NetworkGenome(7, 4);
+
+        SpeciesIndex index = new SpeciesIndex(Settings.speciationThreshold);
+        assertNotEquals(index.assign(a), index.assign(b));
+    }
+
+    @Test
+    public void copiedGenomesShareASpecies() {
+        NetworkGenome a = new NetworkGenome(7, 4);
+        NetworkGenome b = new NetworkGenome(a);
+
+        SpeciesIndex index = new SpeciesIndex(Settings.speciationThreshold);
+        assertEquals(index.assign(a), index.assign(b));
+    }
+}